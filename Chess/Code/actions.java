@@ -26,7 +26,26 @@ abstract class Action implements Function<Board, Board> {
 		this.toMove = toMove;
 	}
 
-	public abstract Board apply(Board b);
+	public Board apply(Board b) {
+		Board next = new Board(b);
+		next.make(this);
+		next.start = start;
+		next.end = end;
+		next.setChecks();
+		return next;
+	}
+	
+	public boolean isEnpassant() {
+		return false;
+	}
+	
+	public boolean isCastle() {
+		return false;
+	}
+	
+	public Piece promotion() {
+		return null;
+	}
 	
 	abstract String toString(Board b);
  
@@ -40,29 +59,6 @@ class Move extends Action {
 		super(start, end, p);
 	}
 	
-	public Board apply(Board b) {		
-		Board next = new Board(b.pieces, b.fiftyMoveCounter, start, end);
-		
-		next.movePieceTo(toMove.copy(), start, end);
-		//noinspection OptionalGetWithoutIsPresent
-		next.get(end).get().setMoved();
-		if (Math.abs(start.y - end.y) == 2 && toMove.isPawn()) {
-			next.unpassant(end);
-		}
-		else {
-			next.unpassant();
-		}
-		
-		if (toMove.isPawn()) {
-			next.fiftyMoveCounter = 0;
-		}
-		else {
-			next.fiftyMoveCounter++;
-		}
-		
-		return next;
-	}
-	
 	public String toString(Board b) {
 		String ans = toMove.toString() + stringify(end);
 		if (b.checkmated(toMove.color.opponent())) {
@@ -79,18 +75,6 @@ class Capture extends Action {
 		super(start, end, toMove);
 	}
 	
-	@SuppressWarnings("OptionalGetWithoutIsPresent")
-	public Board apply(Board b) {
-		Board next = new Board(b.pieces, 0, start, end);
-		
-		next.movePieceTo(toMove.copy(), start, end);	
-		next.unpassant();
-		//noinspection OptionalGetWithoutIsPresent
-		next.get(end).get().setMoved();
-		
-		return next;
-	}
-	
 	public String toString(Board b) {
 		String ans = toMove.toString(start) + "x" + stringify(end);
 		if (b.checkmated(toMove.color.opponent())) {
@@ -107,19 +91,11 @@ class Enpassant extends Action {
 	Enpassant(Posn start, Posn end, Pawn toMove) {
 		super(start, end, toMove);
 	}
-
-	public Board apply(Board b) {
-		Board next = new Board(b.pieces, 0, start, end);
-		
-		next.movePieceTo(toMove.copy(), start, end);
-		//noinspection OptionalGetWithoutIsPresent
-		next.get(end).get().setMoved();
-		next.removePieceAt(new Posn(end.x, start.y));
-		next.unpassant();
-		
-		return next;
-	}
 	
+	public boolean isEnpassant() {
+		return true;
+	}
+
 	public String toString(Board b) {
 		String ans = toMove.toString(start) + "x" + stringify(end);
 		if (b.checkmated(toMove.color.opponent())) {
@@ -154,13 +130,8 @@ class Promotion extends Action {
 		}
 	}
 	
-	public Board apply(Board b) {
-		Board next = new Board(b.pieces, 0, start, end);
-		
-		next.removePieceAt(start);
-		next.placePieceAt(promoteTo, end);
-		next.unpassant();
-		return next;
+	public Piece promotion() {
+		return promoteTo;
 	}
 	
 	public String toString(Board b) {
@@ -177,36 +148,21 @@ class Promotion extends Action {
 
 }
 
+// end is where the king goes, which in Chess960 does not tell which way it castled
 class Castle extends Action {
-	Castle(Posn start, Posn end, King toMove) {
+	final boolean kingside;
+	
+	Castle(Posn start, Posn end, King toMove, boolean kingside) {
 		super(start, end, toMove);
-	}
-
-	public Board apply(Board b) {
-		Board next = new Board(b.pieces, b.fiftyMoveCounter + 1, start, end);
-		next.movePieceTo(toMove.copy(), start, end);
-		next.get(end).get().setMoved();
-
-		if (isKingside()) {
-			Posn p = new Posn(7, start.y);
-			if (b.get(p).get().isRook()) {
-				next.movePieceTo(b.get(p).get(), p, new Posn(5, start.y));
-			}
-		}
-		else {
-			Posn p = new Posn(0, start.y);
-			if (b.get(p).get().isRook()) {
-				next.movePieceTo(b.get(p).get(), p, new Posn(3, start.y));
-			}
-		}
-		
-		next.unpassant();
-		
-		return next;
+		this.kingside = kingside;
 	}
 	
+	public boolean isCastle() {
+		return true;
+	}
+
 	public boolean isKingside() {
-		return end.x > start.x;
+		return kingside;
 	}
 	
 	public String toString(Board b) {
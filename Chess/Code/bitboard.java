@@ -0,0 +1,304 @@
+import java.util.*;
+import javalib.worldimages.*;
+
+// squares are numbered y*8 + x, so a8 is 0 and h1 is 63 (the same layout as Posn on the board)
+class Bitboard {
+	static final int[][] KNIGHT_DELTAS = {{2, 1}, {-2, 1}, {2, -1}, {-2, -1}, {1, 2}, {1, -2}, {-1, 2}, {-1, -2}};
+	static final int[][] KING_DELTAS = {{1, 1}, {-1, 1}, {1, -1}, {-1, -1}, {1, 0}, {0, -1}, {-1, 0}, {0, 1}};
+	static final int[][] ROOK_DIRECTIONS = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+	static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, -1}, {-1, 1}};
+
+	// the squares strictly between two squares on a shared rank, file or diagonal, and the whole line through them
+	static final long[][] BETWEEN = new long[64][64];
+	static final long[][] LINE = new long[64][64];
+
+	static {
+		for (int sq = 0; sq < 64; sq++) {
+			for (int[][] directions : new int[][][] {ROOK_DIRECTIONS, BISHOP_DIRECTIONS}) {
+				for (int[] d : directions) {
+					long line = slidingAttacks(sq, 0, new int[][] {d, {-d[0], -d[1]}}) | bit(sq);
+					long between = 0;
+					int c = (sq & 7) + d[0];
+					int r = (sq >>> 3) + d[1];
+					while (Board.inBounds(r, c)) {
+						BETWEEN[sq][square(c, r)] = between;
+						LINE[sq][square(c, r)] = line;
+						between |= bit(square(c, r));
+						c += d[0];
+						r += d[1];
+					}
+				}
+			}
+		}
+	}
+
+	public static int square(int x, int y) {
+		return y*8 + x;
+	}
+
+	public static int square(Posn p) {
+		return square(p.x, p.y);
+	}
+
+	public static Posn posn(int sq) {
+		return new Posn(sq & 7, sq >>> 3);
+	}
+
+	public static long bit(int sq) {
+		return 1L << sq;
+	}
+
+	public static boolean has(long bb, int sq) {
+		return (bb & bit(sq)) != 0;
+	}
+
+	public static int count(long bb) {
+		return Long.bitCount(bb);
+	}
+
+	public static int first(long bb) {
+		return Long.numberOfTrailingZeros(bb);
+	}
+
+	public static long leaperAttacks(int sq, int[][] deltas) {
+		int x = sq & 7;
+		int y = sq >>> 3;
+
+		long ans = 0;
+		for (int[] d : deltas) {
+			if (Board.inBounds(y + d[1], x + d[0])) {
+				ans |= bit(square(x + d[0], y + d[1]));
+			}
+		}
+		return ans;
+	}
+
+	public static long slidingAttacks(int sq, long occupied, int[][] directions) {
+		int x = sq & 7;
+		int y = sq >>> 3;
+
+		long ans = 0;
+		for (int[] d : directions) {
+			int c = x + d[0];
+			int r = y + d[1];
+			while (Board.inBounds(r, c)) {
+				long b = bit(square(c, r));
+				ans |= b;
+				if ((occupied & b) != 0) {
+					break;
+				}
+				c += d[0];
+				r += d[1];
+			}
+		}
+		return ans;
+	}
+
+	// the squares a pawn of color s standing on sq attacks
+	public static long pawnAttacksFrom(int sq, Side s) {
+		int x = sq & 7;
+		int y = sq >>> 3;
+		int forward = s.equals(Side.WHITE) ? -1 : 1;
+
+		long ans = 0;
+		if (Board.inBounds(y + forward, x - 1)) {
+			ans |= bit(square(x - 1, y + forward));
+		}
+		if (Board.inBounds(y + forward, x + 1)) {
+			ans |= bit(square(x + 1, y + forward));
+		}
+		return ans;
+	}
+
+	// the same attacks looked up instead of worked out, the tables below are all filled in once at class load
+	static final long[] KNIGHT_ATTACKS = new long[64];
+	static final long[] KING_ATTACKS = new long[64];
+	static final long[][] PAWN_ATTACKS = new long[2][64];
+
+	static {
+		for (int sq = 0; sq < 64; sq++) {
+			KNIGHT_ATTACKS[sq] = leaperAttacks(sq, KNIGHT_DELTAS);
+			KING_ATTACKS[sq] = leaperAttacks(sq, KING_DELTAS);
+			for (Side s : Side.values()) {
+				PAWN_ATTACKS[s.ordinal()][sq] = pawnAttacksFrom(sq, s);
+			}
+		}
+	}
+
+	// fancy magic bitboards: the pieces on the squares that can block a slider, multiplied by a magic number for
+	// its square and shifted, index that square's part of a table holding its attacks for every set of blockers.
+	// the magics were found by findMagic (run main to search again); searching at every start-up takes seconds
+	static final long[] ROOK_MAGICS = {
+			0x0200120100408020L, 0x0100108040082100L, 0x3080081000200080L, 0x0200082200100440L,
+			0x0480020800800400L, 0x0900182C00010002L, 0x020012004E810408L, 0x2080082080124500L,
+			0x0002800080400028L, 0x4048401000402000L, 0x0041808030006000L, 0x2820800800100580L,
+			0x0002801802140080L, 0x0104801200140080L, 0x002100040100A200L, 0xC0818030C0800100L,
+			0x0080014020004002L, 0x0200444010042000L, 0x3041010020004013L, 0x0802020040200810L,
+			0x0030828004000800L, 0x9800808004000200L, 0x0000040001902248L, 0x0980020000411084L,
+			0x0C00802080004008L, 0x0000200040005002L, 0x0006002A00108040L, 0x4C0C100080800800L,
+			0x0088080180040080L, 0x0100040080020080L, 0x6901280400221001L, 0x0000040200008041L,
+			0x8000804000800020L, 0x0102200141C01000L, 0x0000102001004100L, 0x0000C80084801000L,
+			0x0004820400800800L, 0xA142001102000408L, 0x420A100104000802L, 0x4402108102000464L,
+			0x2018802840008000L, 0x0840500020044000L, 0x0010012000868012L, 0x2000420020120008L,
+			0x0104000800818024L, 0x3008100440680120L, 0x0A08020001008080L, 0x492A041080420001L,
+			0x0400400080102080L, 0x0402008840290200L, 0x0010022000841480L, 0x0030008410080080L,
+			0x0080800800040280L, 0x0000800200040080L, 0x2000010208100400L, 0x0500841091004200L,
+			0x9004482080021101L, 0x0042004904801022L, 0x4003084010200103L, 0x0014090004100021L,
+			0x0212019008200402L, 0x2402003810050C22L, 0x1080100200882104L, 0x4808010040240882L,
+	};
+	static final long[] ROOK_MASKS = new long[64];
+	static final int[] ROOK_SHIFTS = new int[64];
+	static final int[] ROOK_OFFSETS = new int[64];
+	static final long[] ROOK_TABLE;
+
+	static final long[] BISHOP_MAGICS = {
+			0x0006D8100400C0C4L, 0x0010108910408014L, 0x4010010200308000L, 0x0008084103128004L,
+			0x1041104100070000L, 0x0010823040040440L, 0x000622104C140002L, 0x000A008411480200L,
+			0x0882081304280210L, 0x0000040104030618L, 0x8000500400524000L, 0x8010844040801410L,
+			0x0400040420CA0014L, 0x1000020202221000L, 0x4104020201208840L, 0x1000820494044200L,
+			0x1204064004180228L, 0x0310800421080124L, 0x0228001C0020A204L, 0x0000806802044101L,
+			0x8504002200940000L, 0xA000820808040201L, 0x0020402201442020L, 0x0003100044148400L,
+			0x0098420808420845L, 0x8008030420040128L, 0x0004022004080012L, 0x0201004004040002L,
+			0x0401001009004000L, 0x0010010400208800L, 0x0040810086841080L, 0x280E008808405800L,
+			0x0181041080212000L, 0x4008846000241802L, 0x8404040408020024L, 0x0220200800110104L,
+			0x6240002020120080L, 0x2002008200810810L, 0x8404080092104400L, 0x8480810A01110090L,
+			0x2810824840002112L, 0x040A464820410408L, 0x101020A038071000L, 0x8050084200800800L,
+			0x0002012012002102L, 0x18A8100090240A00L, 0x00200800811000A1L, 0x0004608081020200L,
+			0x0000820120204010L, 0x2A0306A090080801L, 0x8040020201044810L, 0x4100101904090004L,
+			0x4104010820884200L, 0x7C30040508220005L, 0x0020081000809040L, 0x0010100248404048L,
+			0x1042020041041000L, 0x0004002084100880L, 0x418000804C040440L, 0x09020050818C2401L,
+			0x0404A00011A02200L, 0xC0040210A0018101L, 0x0401622024010840L, 0x0520045002004010L,
+	};
+	static final long[] BISHOP_MASKS = new long[64];
+	static final int[] BISHOP_SHIFTS = new int[64];
+	static final int[] BISHOP_OFFSETS = new int[64];
+	static final long[] BISHOP_TABLE;
+
+	static {
+		ROOK_TABLE = fillMagics(ROOK_DIRECTIONS, ROOK_MAGICS, ROOK_MASKS, ROOK_SHIFTS, ROOK_OFFSETS);
+		BISHOP_TABLE = fillMagics(BISHOP_DIRECTIONS, BISHOP_MAGICS, BISHOP_MASKS, BISHOP_SHIFTS, BISHOP_OFFSETS);
+	}
+
+	// the squares along each direction that a piece could stand on to block it; the last square on the board
+	// never blocks anything beyond it, so it is left out
+	public static long blockerMask(int sq, int[][] directions) {
+		long ans = 0;
+		for (int[] d : directions) {
+			int c = (sq & 7) + d[0];
+			int r = (sq >>> 3) + d[1];
+			while (Board.inBounds(r + d[1], c + d[0])) {
+				ans |= bit(square(c, r));
+				c += d[0];
+				r += d[1];
+			}
+		}
+		return ans;
+	}
+
+	// every subset of mask, in no particular order
+	public static long[] subsets(long mask) {
+		long[] ans = new long[1 << count(mask)];
+		long subset = 0;
+		for (int i = 0; i < ans.length; i++) {
+			ans[i] = subset;
+			subset = (subset - mask) & mask;
+		}
+		return ans;
+	}
+
+	// fills in the masks, shifts and offsets for every square from its magic, and returns the table they index
+	public static long[] fillMagics(int[][] directions, long[] magics, long[] masks, int[] shifts, int[] offsets) {
+		int size = 0;
+		for (int sq = 0; sq < 64; sq++) {
+			masks[sq] = blockerMask(sq, directions);
+			shifts[sq] = 64 - count(masks[sq]);
+			offsets[sq] = size;
+			size += 1 << count(masks[sq]);
+		}
+
+		long[] table = new long[size];
+		for (int sq = 0; sq < 64; sq++) {
+			for (long blockers : subsets(masks[sq])) {
+				long attacks = slidingAttacks(sq, blockers, directions);
+				int index = offsets[sq] + (int) ((blockers * magics[sq]) >>> shifts[sq]);
+				if (table[index] != 0 && table[index] != attacks) {
+					throw new IllegalStateException("bad magic for square " + sq);
+				}
+				table[index] = attacks;
+			}
+		}
+		return table;
+	}
+
+	// tries sparse random numbers until one sends every set of blockers that leave different attacks to different entries
+	public static long findMagic(int sq, int[][] directions, Random r) {
+		long mask = blockerMask(sq, directions);
+		int shift = 64 - count(mask);
+		long[] blockers = subsets(mask);
+		long[] attacks = new long[blockers.length];
+		for (int i = 0; i < blockers.length; i++) {
+			attacks[i] = slidingAttacks(sq, blockers[i], directions);
+		}
+
+		// tried[i] is the attempt that last wrote to entry i, so the table needn't be cleared between attempts
+		long[] table = new long[blockers.length];
+		int[] tried = new int[blockers.length];
+		int attempt = 0;
+		search:
+		while (true) {
+			long magic = r.nextLong() & r.nextLong() & r.nextLong();
+			if (count((mask * magic) & 0xFF00000000000000L) < 6) {
+				continue;
+			}
+
+			attempt++;
+			for (int i = 0; i < blockers.length; i++) {
+				int index = (int) ((blockers[i] * magic) >>> shift);
+				if (tried[index] != attempt) {
+					tried[index] = attempt;
+					table[index] = attacks[i];
+				}
+				else if (table[index] != attacks[i]) {
+					continue search;
+				}
+			}
+			return magic;
+		}
+	}
+
+	// prints a fresh set of magics to paste over the ones above
+	public static void main(String[] args) {
+		Random r = new Random(args.length > 0 ? Long.parseLong(args[0]) : 0);
+		for (int[][] directions : new int[][][] {ROOK_DIRECTIONS, BISHOP_DIRECTIONS}) {
+			for (int sq = 0; sq < 64; sq++) {
+				System.out.printf("0x%016XL,%s", findMagic(sq, directions, r), sq % 4 == 3 ? "\n" : " ");
+			}
+			System.out.println();
+		}
+	}
+
+	public static long knightAttacks(int sq) {
+		return KNIGHT_ATTACKS[sq];
+	}
+
+	public static long kingAttacks(int sq) {
+		return KING_ATTACKS[sq];
+	}
+
+	public static long pawnAttacks(int sq, Side s) {
+		return PAWN_ATTACKS[s.ordinal()][sq];
+	}
+
+	public static long rookAttacks(int sq, long occupied) {
+		return ROOK_TABLE[ROOK_OFFSETS[sq] + (int) (((occupied & ROOK_MASKS[sq]) * ROOK_MAGICS[sq]) >>> ROOK_SHIFTS[sq])];
+	}
+
+	public static long bishopAttacks(int sq, long occupied) {
+		return BISHOP_TABLE[BISHOP_OFFSETS[sq]
+				+ (int) (((occupied & BISHOP_MASKS[sq]) * BISHOP_MAGICS[sq]) >>> BISHOP_SHIFTS[sq])];
+	}
+
+	public static long queenAttacks(int sq, long occupied) {
+		return rookAttacks(sq, occupied) | bishopAttacks(sq, occupied);
+	}
+}
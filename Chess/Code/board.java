@@ -5,32 +5,12 @@ import java.util.Map.*;
 import java.util.stream.*;
 import javalib.impworld.*;
 import javalib.worldimages.*;
+import tester.*;
 
 class Board {
 	static final int SIZE = Piece.SIZE;
 	static final int FULL_SIZE = 8 * SIZE;
 	
-	static final Color LIGHT = new Color(240, 217, 181);
-	static final Color DARK = new Color(181, 136, 99);
-	static final WorldImage LIGHT_SQUARE = new RectangleImage(SIZE, SIZE, "solid", LIGHT);
-	static final WorldImage DARK_SQUARE = new RectangleImage(SIZE, SIZE, "solid", DARK);
-	
-	static final Color LIGHT_PREVIOUS_COLOR = new Color(171, 162, 58);
-	static final Color DARK_PREVIOUS_COLOR = new Color(206, 210, 107);
-	static final WorldImage LIGHT_PREVIOUS_SQUARE = new RectangleImage(SIZE, SIZE, "solid", LIGHT_PREVIOUS_COLOR);
-	static final WorldImage DARK_PREVIOUS_SQUARE = new RectangleImage(SIZE, SIZE, "solid", DARK_PREVIOUS_COLOR);
-	
-	static final WorldImage SELECTED_PIECE_BG_DARK = new RectangleImage(SIZE, SIZE, "solid", new Color(100, 110, 64));
-	static final WorldImage SELECTED_PIECE_BG_LIGHT = new RectangleImage(SIZE, SIZE, "solid", new Color(129, 150, 105));
-	
-	static final WorldImage POSSIBLE_MOVES_BG_DARK = new OverlayImage(new CircleImage(SIZE/6, "solid", new Color(100, 110, 64)), DARK_SQUARE);
-	static final WorldImage POSSIBLE_MOVES_BG_LIGHT = new OverlayImage(new CircleImage(SIZE/6, "solid", new Color(129, 150, 105)), LIGHT_SQUARE);
-	
-	static final WorldImage POSSIBLE_CAPTURES_BG_DARK = new OverlayImage(new CircleImage(SIZE/2, "solid", DARK), SELECTED_PIECE_BG_LIGHT);
-	static final WorldImage POSSIBLE_CAPTURES_BG_LIGHT = new OverlayImage(new CircleImage(SIZE/2, "solid", LIGHT), SELECTED_PIECE_BG_LIGHT);
-
-	static final WorldImage CHECK_BG = new CircleImage(SIZE/2, "solid", Color.RED);
-	
 	public static boolean inBounds(int r, int c) {
 		return r < 8 && r >= 0 && c < 8 && c >= 0;
 	}
@@ -59,39 +39,26 @@ class Board {
 	}
 
 	public static Posn stringToPosn(String str) {
-		char c = str.charAt(0);
+		int j = str.charAt(0) - 'a';
 		int i = Integer.parseInt(str.charAt(1)+"");
 		
-		int j = -1;
-		switch (c) {
-			case 'a':
-				j = 0;
-			case 'b':
-				j = 1;
-			case 'c':
-				j = 2;
-			case 'd':
-				j = 3;
-			case 'e':
-				j = 4;
-			case 'f':
-				j = 5;
-			case 'g':
-				j = 6;
-			case 'h':
-				j = 7;
-		}
-		
-		return new Posn(8-i, j);
-	}
-	
-	public void copyMap(Map<Posn, Piece> pieceMap) {
-		for (int r = 0; r < 8; r++) {
-			for (int c = 0; c < 8; c++) {
-				Posn p = new Posn(c, r);
-				if (pieceMap.containsKey(p)) {
-					pieces.put(p, pieceMap.get(p).copy());
-				}
+		return new Posn(j, 8-i);
+	}
+	
+	static final int WHITE_KINGSIDE = 1;
+	static final int WHITE_QUEENSIDE = 2;
+	static final int BLACK_KINGSIDE = 4;
+	static final int BLACK_QUEENSIDE = 8;
+	
+	// the right of s to castle on the king's or the queen's side
+	public static int castlingRight(Side s, boolean kingside) {
+		return (s.equals(Side.WHITE) ? WHITE_KINGSIDE : BLACK_KINGSIDE) << (kingside ? 0 : 1);
+	}
+	
+	public void copyPieces(Board other) {
+		for (int sq = 0; sq < 64; sq++) {
+			if (other.squares[sq] != null) {
+				setPiece(sq, other.squares[sq].copy());
 			}
 		}
 	}
@@ -101,19 +68,44 @@ class Board {
 	
 	int fiftyMoveCounter = 0;
 	
-	final Map<Posn, Piece> pieces = new HashMap<>();
+	Side turn = Side.WHITE;
+	int castling = 0;
+	// the square of the rook each right castles with, by the right's bit, and the rights that survive a move
+	// touching each square; both are fixed by the start position (in Chess960 the king and rooks start anywhere
+	// on the back row), so copies of a board share them
+	int[] castlingRooks = {-1, -1, -1, -1};
+	int[] castlingMask = new int[64];
+	int enpassant = -1; // the square a pawn can capture onto en passant, -1 if none
+	
+	long key; // the Zobrist key of the position, see Zobrist
+	long pawnKey; // the same for the pawns alone, for caching pawn structure
+	long checkers; // the pieces giving check to the side to move, kept up to date by make and unmake
+	int staticScore; // material and piece-square score in centipawns from white's point of view, see PieceSquare
+	
+	// the piece objects, indexed by square (see Bitboard), backed by one bitboard per color and piece type
+	final Piece[] squares = new Piece[64];
+	final long[][] bitboards = new long[2][6];
+	final long[] occupancy = new long[2];
+	long occupied;
 
 	Set<Posn> selected = new HashSet<>();
+	long targets; // the selected squares as a bitboard, for drawing
 	Posn current = new Posn(-1, -1);
 	
-	Board(Map<Posn, Piece> pieces, int fiftyMoveCounter, Posn start, Posn end) {
-		copyMap(pieces);
-		this.fiftyMoveCounter = fiftyMoveCounter;
+	Board(Board other) {
+		copyPieces(other);
+		this.fiftyMoveCounter = other.fiftyMoveCounter;
+		this.turn = other.turn;
+		this.castling = other.castling;
+		this.castlingRooks = other.castlingRooks;
+		this.castlingMask = other.castlingMask;
+		this.enpassant = other.enpassant;
 		
-		this.start = start;
-		this.end = end;
+		this.start = other.start;
+		this.end = other.end;
 		
-		setChecks();
+		this.key = other.key;
+		this.checkers = other.checkers;
 	}
 	
 	public void initialize(Variant v) {
@@ -123,70 +115,134 @@ class Board {
 		else if (v.equals(Variant.CHESS960)) {
 			initialize960();
 		}
+		
+		setCastlingFromPieces();
+		key = Zobrist.compute(this);
+		checkers = computeCheckers();
+	}
+	
+	// grants each side whose king stands on its back row the rights to castle with the outermost rook there on
+	// either side of it, which are the corner rooks in standard chess and the only two in Chess960
+	public void setCastlingFromPieces() {
+		castling = 0;
+		castlingRooks = new int[] {-1, -1, -1, -1};
+		for (Side s : Side.values()) {
+			int row = s.equals(Side.WHITE) ? 7 : 0;
+			long king = bitboards[s.ordinal()][Piece.KING];
+			if (king == 0 || Bitboard.first(king) >>> 3 != row) {
+				continue;
+			}
+			int file = Bitboard.first(king) & 7;
+			for (int rook = 7; rook > file; rook--) {
+				if (hasPiece(Bitboard.square(rook, row), Piece.ROOK, s)) {
+					setCastlingRook(castlingRight(s, true), Bitboard.square(rook, row));
+					break;
+				}
+			}
+			for (int rook = 0; rook < file; rook++) {
+				if (hasPiece(Bitboard.square(rook, row), Piece.ROOK, s)) {
+					setCastlingRook(castlingRight(s, false), Bitboard.square(rook, row));
+					break;
+				}
+			}
+		}
+		setCastlingMask();
+	}
+	
+	public void setCastlingRook(int right, int sq) {
+		castling |= right;
+		castlingRooks[Integer.numberOfTrailingZeros(right)] = sq;
+	}
+	
+	// the square of the rook the right castles with
+	public int castlingRook(int right) {
+		return castlingRooks[Integer.numberOfTrailingZeros(right)];
+	}
+	
+	// moving a king loses both its rights, and moving or taking a rook loses the one it castles with
+	public void setCastlingMask() {
+		castlingMask = new int[64];
+		Arrays.fill(castlingMask, 15);
+		for (int right = WHITE_KINGSIDE; right <= BLACK_QUEENSIDE; right <<= 1) {
+			int rook = castlingRook(right);
+			if (rook >= 0) {
+				Side s = right <= WHITE_QUEENSIDE ? Side.WHITE : Side.BLACK;
+				castlingMask[rook] &= ~right;
+				castlingMask[kingSquare(s)] &= ~right;
+			}
+		}
+	}
+	
+	public boolean hasPiece(int sq, int type, Side s) {
+		return Bitboard.has(bitboards[s.ordinal()][type], sq);
 	}
 
 	public void initialize960() {
 		for (int i = 0; i < 8; i++) {
-			pieces.put(new Posn(i, 1), new Pawn(Side.BLACK));
-			pieces.put(new Posn(i, 6), new Pawn(Side.WHITE));
+			put(new Posn(i, 1), new Pawn(Side.BLACK));
+			put(new Posn(i, 6), new Pawn(Side.WHITE));
 		}
 
-		List<String> piecesToPlace = new ArrayList<>(
-				Arrays.asList("Bishop", "Bishop", "Knight", "Knight", "King", "Queen", "Rook", "Rook"));
-
+		// bishops on one light and one dark square, then the queen and knights anywhere, and the rooks and
+		// king fill the last three squares in that order, so the king always stands between its rooks
 		Random r = new Random();
-		int firstBishopCol = -1;
-		for (int i = 0; i < 8; i++) {
-			int index = r.nextInt(piecesToPlace.size());
-			String s = piecesToPlace.get(index);
-			while (s.equals("Bishop") && firstBishopCol >= 0 && firstBishopCol % 2 == i % 2) {
-				index = r.nextInt(piecesToPlace.size());
-				s = piecesToPlace.get(index);
+		String[] row = new String[8];
+		row[r.nextInt(4) * 2] = "Bishop";
+		row[r.nextInt(4) * 2 + 1] = "Bishop";
+		for (String s : new String[] {"Queen", "Knight", "Knight"}) {
+			int col = r.nextInt(8);
+			while (row[col] != null) {
+				col = r.nextInt(8);
 			}
-			if (s.equals("Bishop")) {
-				firstBishopCol = i;
+			row[col] = s;
+		}
+		Iterator<String> rest = Arrays.asList("Rook", "King", "Rook").iterator();
+		for (int i = 0; i < 8; i++) {
+			if (row[i] == null) {
+				row[i] = rest.next();
 			}
-			piecesToPlace.remove(index);
-
-			Piece pWhite = stringToPiece(s, Side.WHITE);
-			Piece pBlack = stringToPiece(s, Side.BLACK);
 
-			pieces.put(new Posn(i, 7), pWhite);
-			pieces.put(new Posn(i, 0), pBlack);
+			put(new Posn(i, 7), stringToPiece(row[i], Side.WHITE));
+			put(new Posn(i, 0), stringToPiece(row[i], Side.BLACK));
 		}
 	}
 
 	public void initializeStandard() {
 		for (int i = 0; i < 8; i++) {
-			pieces.put(new Posn(i, 1), new Pawn(Side.BLACK));
-			pieces.put(new Posn(i, 6), new Pawn(Side.WHITE));
+			put(new Posn(i, 1), new Pawn(Side.BLACK));
+			put(new Posn(i, 6), new Pawn(Side.WHITE));
 		}
 
-		pieces.put(new Posn(0, 0), new Rook(Side.BLACK));
-		pieces.put(new Posn(7, 0), new Rook(Side.BLACK));
-		pieces.put(new Posn(0, 7), new Rook(Side.WHITE));
-		pieces.put(new Posn(7, 7), new Rook(Side.WHITE));
+		put(new Posn(0, 0), new Rook(Side.BLACK));
+		put(new Posn(7, 0), new Rook(Side.BLACK));
+		put(new Posn(0, 7), new Rook(Side.WHITE));
+		put(new Posn(7, 7), new Rook(Side.WHITE));
 
-		pieces.put(new Posn(1, 0), new Knight(Side.BLACK));
-		pieces.put(new Posn(6, 0), new Knight(Side.BLACK));
-		pieces.put(new Posn(1, 7), new Knight(Side.WHITE));
-		pieces.put(new Posn(6, 7), new Knight(Side.WHITE));
+		put(new Posn(1, 0), new Knight(Side.BLACK));
+		put(new Posn(6, 0), new Knight(Side.BLACK));
+		put(new Posn(1, 7), new Knight(Side.WHITE));
+		put(new Posn(6, 7), new Knight(Side.WHITE));
 
-		pieces.put(new Posn(2, 0), new Bishop(Side.BLACK));
-		pieces.put(new Posn(5, 0), new Bishop(Side.BLACK));
-		pieces.put(new Posn(2, 7), new Bishop(Side.WHITE));
-		pieces.put(new Posn(5, 7), new Bishop(Side.WHITE));
+		put(new Posn(2, 0), new Bishop(Side.BLACK));
+		put(new Posn(5, 0), new Bishop(Side.BLACK));
+		put(new Posn(2, 7), new Bishop(Side.WHITE));
+		put(new Posn(5, 7), new Bishop(Side.WHITE));
 
-		pieces.put(new Posn(3, 0), new Queen(Side.BLACK));
-		pieces.put(new Posn(4, 0), new King(Side.BLACK));
-		pieces.put(new Posn(3, 7), new Queen(Side.WHITE));
-		pieces.put(new Posn(4, 7), new King(Side.WHITE));
+		put(new Posn(3, 0), new Queen(Side.BLACK));
+		put(new Posn(4, 0), new King(Side.BLACK));
+		put(new Posn(3, 7), new Queen(Side.WHITE));
+		put(new Posn(4, 7), new King(Side.WHITE));
 	}
 
 	Board(Variant v) {
 		initialize(v);
 	}
 	
+	public static Board fromFen(String fen) {
+		String[] utils = fen.trim().split(" +");
+		return new Board(utils, utils[0].split("/"));
+	}
+	
 	Board(String[] utils, String[] ranks) {
 		for (int rank = 0; rank < 8; rank++) {
 			int file = 0;
@@ -198,70 +254,84 @@ class Board {
 				else {
 					Posn p = new Posn(file, rank);
 					if (c == 'r') {
-						pieces.put(p, new Rook(Side.BLACK));
+						put(p, new Rook(Side.BLACK));
 					}
 					else if (c == 'p') {
-						pieces.put(p, new Pawn(Side.BLACK));
+						put(p, new Pawn(Side.BLACK));
 					}
 					else if (c == 'q') {
-						pieces.put(p, new Queen(Side.BLACK));
+						put(p, new Queen(Side.BLACK));
 					}
 					else if (c == 'n') {
-						pieces.put(p, new Knight(Side.BLACK));
+						put(p, new Knight(Side.BLACK));
 					}
 					else if (c == 'k') {
-						pieces.put(p, new King(Side.BLACK));
+						put(p, new King(Side.BLACK));
 					}
 					else if (c == 'b') {
-						pieces.put(p, new Bishop(Side.BLACK));
+						put(p, new Bishop(Side.BLACK));
 					}
 					else if (c == 'R') {
-						pieces.put(p, new Rook(Side.WHITE));
+						put(p, new Rook(Side.WHITE));
 					}
 					else if (c == 'P') {
-						pieces.put(p, new Pawn(Side.WHITE));
+						put(p, new Pawn(Side.WHITE));
 					}
 					else if (c == 'Q') {
-						pieces.put(p, new Queen(Side.WHITE));
+						put(p, new Queen(Side.WHITE));
 					}
 					else if (c == 'N') {
-						pieces.put(p, new Knight(Side.WHITE));
+						put(p, new Knight(Side.WHITE));
 					}
 					else if (c == 'K') {
-						pieces.put(p, new King(Side.WHITE));
+						put(p, new King(Side.WHITE));
 					}
 					else if (c == 'B') {
-						pieces.put(p, new Bishop(Side.WHITE));
+						put(p, new Bishop(Side.WHITE));
 					}
 					file++;
 				}
 			}
 		}
 		
-		String castlingAbility = utils[2];
-		
-		if (!castlingAbility.contains("k")) {
-			get(new Posn(7, 0)).ifPresent(Piece::setMoved);
-		}
-		if (!castlingAbility.contains("q")) {
-			get(new Posn(0, 0)).ifPresent(Piece::setMoved);
+		if (utils[1].equals("b")) {
+			turn = Side.BLACK;
 		}
-		if (!castlingAbility.contains("K")) {
-			get(new Posn(7, 7)).ifPresent(Piece::setMoved);
-		}
-		if (!castlingAbility.contains("Q")) {
-			get(new Posn(0, 7)).ifPresent(Piece::setMoved);
+		
+		// KQkq castle with the outermost rooks, and a file letter (Shredder-FEN, for Chess960) with the rook on it
+		setCastlingFromPieces();
+		int granted = 0;
+		for (char c : utils[2].toCharArray()) {
+			Side s = Character.isUpperCase(c) ? Side.WHITE : Side.BLACK;
+			char letter = Character.toLowerCase(c);
+			if (letter == 'k' || letter == 'q') {
+				granted |= castlingRight(s, letter == 'k');
+			}
+			else if (letter >= 'a' && letter <= 'h' && bitboards[s.ordinal()][Piece.KING] != 0
+					&& kingSquare(s) >>> 3 == (s.equals(Side.WHITE) ? 7 : 0)) {
+				int king = kingSquare(s);
+				int rook = (king & ~7) | (letter - 'a');
+				if (hasPiece(rook, Piece.ROOK, s)) {
+					setCastlingRook(castlingRight(s, rook > king), rook);
+					granted |= castlingRight(s, rook > king);
+				}
+			}
 		}
+		castling &= granted;
+		setCastlingMask();
 		
 		if (!utils[3].contains("-")) {
-			Posn p = stringToPosn(utils[3]);
-			unpassant(p);
+			enpassant = Bitboard.square(stringToPosn(utils[3]));
+			unpassant(Bitboard.posn(enpassantPawn()));
 		}
 		
 		if (!utils[4].contains("-")) {
 			fiftyMoveCounter = Integer.parseInt(utils[4]);
 		}
 		
+		key = Zobrist.compute(this);
+		checkers = computeCheckers();
+		
 		setChecks();
 	}
 	
@@ -270,53 +340,13 @@ class Board {
 		for (int r = 0; r < 8; r++) {
 			int nonPieces = 0;
 			for (int c = 0; c < 8; c++) {
-				Posn p = new Posn(c, r);
-				if (isPiece(p)) {
+				Piece pi = squares[Bitboard.square(c, r)];
+				if (pi != null) {
 					if (nonPieces > 0) {
 						ans.append(nonPieces);
 						nonPieces = 0;
 					}
-					Piece pi = get(p).get();
-					if (pi.isColor(Side.WHITE)) {
-						if (pi.isRook()) {
-							ans.append("R");
-						}
-						else if (pi.isBishop()) {
-							ans.append("B");
-						}
-						else if (pi.isKing()) {
-							ans.append("K");
-						}
-						else if (pi.isKnight()) {
-							ans.append("N");
-						}
-						else if (pi.isPawn()) {
-							ans.append("P");
-						}
-						else if (pi.isQueen()) {
-							ans.append("Q");
-						}
-					}
-					else {
-						if (pi.isRook()) {
-							ans.append("r");
-						}
-						else if (pi.isBishop()) {
-							ans.append("b");
-						}
-						else if (pi.isKing()) {
-							ans.append("k");
-						}
-						else if (pi.isKnight()) {
-							ans.append("n");
-						}
-						else if (pi.isPawn()) {
-							ans.append("p");
-						}
-						else if (pi.isQueen()) {
-							ans.append("q");
-						}
-					}
+					ans.append(pi.fenLetter());
 				}
 				else {
 					nonPieces++;
@@ -332,136 +362,25 @@ class Board {
 		return ans.toString();
 	}
 
-	public void display(WorldScene ans, boolean flipped) {
-		boolean startColor = true;
-		for (int r = 0; r < 8; r++) {
-			boolean color = startColor;
-			for (int c = 0; c < 8; c++) {
-				Posn p = new Posn(c, r);
-				
-				if (flipped) {
-					c = 7-c;
-					r = 7-r;
-				}
-
-				if (color) {
-					if (isPiece(p)) {
-						Piece pi = get(p).get();
-						if (p.equals(current)) {
-							ans.placeImageXY(pi.pieceImage.overlayImages(SELECTED_PIECE_BG_LIGHT),
-									(int) ((c + 0.5) * (Piece.SIZE)),
-									(r + 1) * (Piece.SIZE));
-						}
-						else if (selected(p)) {
-							ans.placeImageXY(pi.pieceImage.overlayImages(POSSIBLE_CAPTURES_BG_LIGHT),
-									(int) ((c + 0.5) * (Piece.SIZE)),
-									(r + 1) * (Piece.SIZE));
-						}
-						else if (inCheck(pi.color) && pi.isKing()) {
-							ans.placeImageXY(pi.pieceImage.overlayImages(CHECK_BG.overlayImages(LIGHT_SQUARE)),
-									(int) ((c + 0.5) * (Piece.SIZE)),
-									(r + 1) * (Piece.SIZE));
-						}
-						else if (p.equals(start) || p.equals(end)) {
-							ans.placeImageXY(pi.pieceImage.overlayImages(LIGHT_PREVIOUS_SQUARE),
-									(int) ((c + 0.5) * (Piece.SIZE)),
-									(r + 1) * (Piece.SIZE));
-						}
-						else {
-							ans.placeImageXY(pi.pieceImage.overlayImages(LIGHT_SQUARE),
-									(int) ((c + 0.5) * (Piece.SIZE)),
-									(r + 1) * (Piece.SIZE));
-						}
-					}
-					else if (selected(p)) {
-						ans.placeImageXY(POSSIBLE_MOVES_BG_LIGHT,
-								(int) ((c + 0.5) * (Piece.SIZE)),
-								(r + 1) * (Piece.SIZE));
-					}
-					else if (p.equals(start) || p.equals(end)) {
-						ans.placeImageXY(LIGHT_PREVIOUS_SQUARE,
-								(int) ((c + 0.5) * (Piece.SIZE)),
-								(r + 1) * (Piece.SIZE));
-					}
-					else {
-						ans.placeImageXY(LIGHT_SQUARE,
-								(int) ((c + 0.5) * (Piece.SIZE)),
-								(r + 1) * (Piece.SIZE));
-					}
-				}
-				else {
-					if (isPiece(p)) {
-						Piece pi = get(p).get();
-						if (p.equals(current)) {
-							ans.placeImageXY(pi.pieceImage.overlayImages(SELECTED_PIECE_BG_DARK),
-									(int) ((c + 0.5) * (Piece.SIZE)),
-									(r + 1) * (Piece.SIZE));
-						}
-						else if (selected(p)) {
-							ans.placeImageXY(pi.pieceImage.overlayImages(POSSIBLE_CAPTURES_BG_DARK),
-									(int) ((c + 0.5) * (Piece.SIZE)),
-									(r + 1) * (Piece.SIZE));
-						}
-						else if (inCheck(pi.color) && pi.isKing()) {
-							ans.placeImageXY(pi.pieceImage.overlayImages(CHECK_BG.overlayImages(DARK_SQUARE)),
-									(int) ((c + 0.5) * (Piece.SIZE)),
-									(r + 1) * (Piece.SIZE));
-						}
-						else if (p.equals(start) || p.equals(end)) {
-							ans.placeImageXY(pi.pieceImage.overlayImages(DARK_PREVIOUS_SQUARE),
-									(int) ((c + 0.5) * (Piece.SIZE)),
-									(r + 1) * (Piece.SIZE));
-						}
-						else {
-							ans.placeImageXY(pi.pieceImage.overlayImages(DARK_SQUARE),
-									(int) ((c + 0.5) * (Piece.SIZE)),
-									(r + 1) * (Piece.SIZE));
-						}
-					}
-					else if (selected(p)) {
-						ans.placeImageXY(POSSIBLE_MOVES_BG_DARK,
-								(int) ((c + 0.5) * (Piece.SIZE)),
-								(r + 1) * (Piece.SIZE));
-					}
-					else if (p.equals(start) || p.equals(end)) {
-						ans.placeImageXY(DARK_PREVIOUS_SQUARE,
-								(int) ((c + 0.5) * (Piece.SIZE)),
-								(r + 1) * (Piece.SIZE));
-					}
-					else {
-						ans.placeImageXY(DARK_SQUARE,
-								(int) ((c + 0.5) * (Piece.SIZE)),
-								(r + 1) * (Piece.SIZE));
-					}
-				}
-				
-				color = !color;
-				if (flipped) {
-					c = 7-c;
-					r = 7-r;
-				}
-			}
-			startColor = !startColor;
-		}
+	// the whole FEN, side to move, castling, en passant and fifty move counter included; moves are not counted
+	public String fullFen() {
+		return fen() + " " + (turn.equals(Side.WHITE) ? "w" : "b") + " " + addCastlingFen() + " " + addEnpassantFen()
+				+ " " + fiftyMoveCounter + " 1";
 	}
-	
+
 	public void setChecks() {
-		if (inCheck(Side.WHITE)) {
-			//noinspection OptionalGetWithoutIsPresent
-			get(getKing(Side.WHITE)).get().putInCheck();
-		}
-		else {
-			//noinspection OptionalGetWithoutIsPresent
-			get(getKing(Side.WHITE)).get().unCheck();
-		}
-		
-		if (inCheck(Side.BLACK)) {
-			//noinspection OptionalGetWithoutIsPresent
-			get(getKing(Side.BLACK)).get().putInCheck();
-		}
-		else {
-			//noinspection OptionalGetWithoutIsPresent
-			get(getKing(Side.BLACK)).get().unCheck();
+		for (Side s : Side.values()) {
+			// a pseudo-legal king capture can leave a side without a king while moves are being filtered
+			if (bitboards[s.ordinal()][Piece.KING] == 0) {
+				continue;
+			}
+			
+			if (inCheck(s)) {
+				squares[kingSquare(s)].putInCheck();
+			}
+			else {
+				squares[kingSquare(s)].unCheck();
+			}
 		}
 	}
 	
@@ -481,53 +400,24 @@ class Board {
 
 	public Set<Action> allActions(Side s) {
 
-		return pieces.entrySet().stream()
-				.filter(e -> e.getValue().isColor(s))
-				.map(e -> e.getValue().generateActions(this, e.getKey()))
-				.flatMap(Set::stream)
-				.collect(Collectors.toSet())/*.stream().sorted((a1, a2) -> (int) (a1.priority(this) - a2.priority(this))).collect(Collectors.toList())*/;
+		MoveList list = new MoveList();
+		MoveGenerator.generate(this, s, list);
+		
+		Set<Action> ans = new HashSet<>();
+		for (int i = 0; i < list.size(); i++) {
+			if (MoveGenerator.legal(this, list, list.get(i))) {
+				ans.add(Moves.toAction(this, list.get(i)));
+			}
+		}
+		return ans/*.stream().sorted((a1, a2) -> (int) (a1.priority(this) - a2.priority(this))).collect(Collectors.toList())*/;
 	}
 	
-	public boolean insufficientMaterial() {		
-		int whiteBishopFreq = 0;
-		int whiteKnightFreq = 0;
-		
-		int blackBishopFreq = 0;
-		int blackKnightFreq = 0;
-		
-		Set<Entry<Posn, Piece>> allPieces = pieces.entrySet();
-		
-		for (Entry<Posn, Piece> e : allPieces) {
-			Piece p = e.getValue();
-			if (p.isRook() || p.isPawn() || p.isQueen()) {
+	public boolean insufficientMaterial() {
+		for (long[] side : bitboards) {
+			if (side[Piece.PAWN] != 0 || side[Piece.ROOK] != 0 || side[Piece.QUEEN] != 0
+					|| Bitboard.count(side[Piece.BISHOP]) >= 2 || Bitboard.count(side[Piece.KNIGHT]) >= 3) {
 				return false;
 			}
-			
-			if (p.isBishop() && p.isColor(Side.WHITE)) {
-				whiteBishopFreq++;
-				if (whiteBishopFreq >= 2) {
-					return false;
-				}
-			}
-			if (p.isBishop() && p.isColor(Side.BLACK)) {
-				blackBishopFreq++;
-				if (blackBishopFreq >= 2) {
-					return false;
-				}
-			}
-			
-			if (p.isKnight() && p.isColor(Side.WHITE)) {
-				whiteKnightFreq++;
-				if (whiteKnightFreq >= 3) {
-					return false;
-				}
-			}
-			if (p.isKnight() && p.isColor(Side.BLACK)) {
-				blackKnightFreq++;
-				if (blackKnightFreq >= 3) {
-					return false;
-				}
-			}
 		}
 		return true;
 	}
@@ -569,12 +459,16 @@ class Board {
 					.stream()
 					.map(a -> a.end)
 					.collect(Collectors.toSet());
+			for (Posn target : selected) {
+				targets |= Bitboard.bit(Bitboard.square(target));
+			}
 		}
 	}
 	
 	public void deselect() {
 		current = new Posn(-1, -1);
 		selected.clear();
+		targets = 0;
 	}
 
 	public void movePieceTo(Piece p, Posn start, Posn end) {		
@@ -585,9 +479,45 @@ class Board {
 
 	public void removePieceAt(Posn p) {
 		if (inBounds(p)) {
-			pieces.remove(p);
+			clearSquare(Bitboard.square(p));
 		}
 	}
+	
+	public void put(Posn p, Piece pi) {
+		clearSquare(Bitboard.square(p));
+		setPiece(Bitboard.square(p), pi);
+	}
+	
+	// the square must be empty
+	public void setPiece(int sq, Piece pi) {
+		long b = Bitboard.bit(sq);
+		squares[sq] = pi;
+		bitboards[pi.color.ordinal()][pi.type()] |= b;
+		occupancy[pi.color.ordinal()] |= b;
+		occupied |= b;
+		key ^= Zobrist.piece(pi, sq);
+		staticScore += PieceSquare.score(pi, sq);
+		if (pi.isPawn()) {
+			pawnKey ^= Zobrist.piece(pi, sq);
+		}
+	}
+	
+	public Piece clearSquare(int sq) {
+		Piece pi = squares[sq];
+		if (pi != null) {
+			long b = ~Bitboard.bit(sq);
+			squares[sq] = null;
+			bitboards[pi.color.ordinal()][pi.type()] &= b;
+			occupancy[pi.color.ordinal()] &= b;
+			occupied &= b;
+			key ^= Zobrist.piece(pi, sq);
+			staticScore -= PieceSquare.score(pi, sq);
+			if (pi.isPawn()) {
+				pawnKey ^= Zobrist.piece(pi, sq);
+			}
+		}
+		return pi;
+	}
 
 //	public void print() {
 //		for (Cell[] row : grid) {
@@ -608,21 +538,198 @@ class Board {
 
 	public void placePieceAt(Piece p, Posn pn) {
 		if (inBounds(pn)) {
-			pieces.put(pn, p.copy());
+			put(pn, p.copy());
 		}
 	}
 	
 	public Optional<Piece> get(Posn p) {
-		return Optional.ofNullable(pieces.get(p));
+		if (!inBounds(p)) {
+			return Optional.empty();
+		}
+		return Optional.ofNullable(squares[Bitboard.square(p)]);
 	}
 	public boolean isPiece(Posn p) {
-		return get(p).isPresent(); // pieces.containsKey(p);
+		return inBounds(p) && Bitboard.has(occupied, Bitboard.square(p));
 	}
 	
 	public boolean selected(Posn p) {
 		return selected.contains(p);
 	}
 
+	// the square of the pawn that can be captured en passant
+	public int enpassantPawn() {
+		if (enpassant >>> 3 == 5) {
+			return enpassant - 8;
+		}
+		return enpassant + 8;
+	}
+	
+	// whether a pawn of the side to move actually stands next to the en-passant pawn
+	public boolean enpassantCapturable() {
+		return enpassant >= 0
+				&& (Bitboard.pawnAttacks(enpassant, turn.opponent()) & bitboards[turn.ordinal()][Piece.PAWN]) != 0;
+	}
+	
+	// plays a move (see Moves) onto this board in place, recording what unmake needs in u
+	public void make(int move, UndoInfo u) {
+		int from = Moves.from(move);
+		int to = Moves.to(move);
+		Piece mover = squares[from];
+		
+		u.from = from;
+		u.to = to;
+		u.mover = mover;
+		u.moved = mover.moved;
+		u.castling = castling;
+		u.enpassant = enpassant;
+		u.fiftyMoveCounter = fiftyMoveCounter;
+		u.key = key;
+		u.checkers = checkers;
+		u.rookFrom = -1;
+		
+		key ^= Zobrist.state(this);
+		if (enpassant >= 0) {
+			squares[enpassantPawn()].unpassant();
+		}
+		
+		if (Moves.isCastle(move)) {
+			// the king takes its own rook, and the two end up where they would in standard chess; in Chess960
+			// either may already stand on the other's square, so both are lifted before either is put down
+			boolean kingside = to > from;
+			u.to = (from & ~7) | (kingside ? 6 : 2);
+			u.rookFrom = to;
+			u.rookTo = (from & ~7) | (kingside ? 5 : 3);
+			u.capturedSquare = to;
+			u.captured = null;
+			Piece rook = clearSquare(u.rookFrom);
+			u.rookMoved = rook.moved;
+			clearSquare(from);
+			setPiece(u.to, mover);
+			setPiece(u.rookTo, rook);
+			rook.setMoved();
+		}
+		else {
+			// the pawn taken en passant stands beside the capturing pawn, on the same row
+			u.capturedSquare = Moves.isEnpassant(move) ? (from & ~7) | (to & 7) : to;
+			u.captured = clearSquare(u.capturedSquare);
+			
+			clearSquare(from);
+			if (Moves.isPromotion(move)) {
+				setPiece(to, Piece.create(Moves.promotion(move), mover.color));
+			}
+			else {
+				setPiece(to, mover);
+			}
+		}
+		mover.setMoved();
+		
+		castling &= castlingMask[from] & castlingMask[to];
+		
+		enpassant = -1;
+		if (Moves.isDoublePush(move)) {
+			enpassant = (from + to) / 2;
+			((Pawn) mover).enpassantable = true;
+		}
+		
+		if (mover.isPawn() || u.captured != null) {
+			fiftyMoveCounter = 0;
+		}
+		else {
+			fiftyMoveCounter++;
+		}
+		
+		turn = turn.opponent();
+		key ^= Zobrist.state(this);
+		checkers = computeCheckers();
+	}
+	
+	public void make(Action a, UndoInfo u) {
+		make(Moves.fromAction(this, a), u);
+	}
+	
+	public UndoInfo make(Action a) {
+		UndoInfo u = new UndoInfo();
+		make(a, u);
+		return u;
+	}
+	
+	// the type of the piece on sq, or -1 if it is empty
+	public int typeAt(int sq) {
+		if (squares[sq] == null) {
+			return -1;
+		}
+		return squares[sq].type();
+	}
+	
+	// takes back the move recorded in u, which must be the last one made
+	public void unmake(UndoInfo u) {
+		turn = turn.opponent();
+		
+		if (u.rookFrom >= 0) {
+			Piece rook = clearSquare(u.rookTo);
+			clearSquare(u.to);
+			rook.moved = u.rookMoved;
+			setPiece(u.rookFrom, rook);
+		}
+		else {
+			clearSquare(u.to);
+		}
+		setPiece(u.from, u.mover);
+		u.mover.moved = u.moved;
+		u.mover.unpassant();
+		
+		if (u.captured != null) {
+			setPiece(u.capturedSquare, u.captured);
+		}
+		
+		castling = u.castling;
+		enpassant = u.enpassant;
+		fiftyMoveCounter = u.fiftyMoveCounter;
+		key = u.key;
+		checkers = u.checkers;
+		
+		if (enpassant >= 0) {
+			((Pawn) squares[enpassantPawn()]).enpassantable = true;
+		}
+	}
+
+	// passes the turn without moving, for the null move search: only the side to move and en passant change
+	public void makeNull(UndoInfo u) {
+		u.enpassant = enpassant;
+		u.fiftyMoveCounter = fiftyMoveCounter;
+		u.key = key;
+		u.checkers = checkers;
+		
+		key ^= Zobrist.state(this);
+		if (enpassant >= 0) {
+			squares[enpassantPawn()].unpassant();
+		}
+		enpassant = -1;
+		fiftyMoveCounter++;
+		turn = turn.opponent();
+		key ^= Zobrist.state(this);
+		// passing is never tried in check, and the side that passed can't have been giving check
+		checkers = 0;
+	}
+	
+	public void unmakeNull(UndoInfo u) {
+		turn = turn.opponent();
+		enpassant = u.enpassant;
+		fiftyMoveCounter = u.fiftyMoveCounter;
+		key = u.key;
+		checkers = u.checkers;
+		
+		if (enpassant >= 0) {
+			((Pawn) squares[enpassantPawn()]).enpassantable = true;
+		}
+	}
+	
+	// whether s has anything but its king and pawns, without which passing would often be its best move
+	public boolean hasNonPawnMaterial(Side s) {
+		long[] own = bitboards[s.ordinal()];
+		return (occupancy[s.ordinal()] & ~own[Piece.PAWN] & ~own[Piece.KING]) != 0;
+	}
+
 	public Board makeMove(Posn start, Posn end) {
 		this.start = start;
 		this.end = end;
@@ -631,31 +738,70 @@ class Board {
 	}
 
 	public boolean inCheck(Side s) {
-		return attacked(getKing(s), s);
+		if (s.equals(turn)) {
+			return checkers != 0;
+		}
+		return attacked(kingSquare(s), s);
+	}
+	
+	// whether any piece of s's opponent attacks sq
+	public boolean attacked(int sq, Side s) {
+		return attacked(sq, s, occupied);
+	}
+	
+	// the same, with the sliders' view blocked only by the given occupancy
+	public boolean attacked(int sq, Side s, long occupied) {
+		long[] them = bitboards[s.opponent().ordinal()];
+		
+		return (Bitboard.pawnAttacks(sq, s) & them[Piece.PAWN]) != 0
+				|| (Bitboard.knightAttacks(sq) & them[Piece.KNIGHT]) != 0
+				|| (Bitboard.kingAttacks(sq) & them[Piece.KING]) != 0
+				|| (Bitboard.bishopAttacks(sq, occupied) & (them[Piece.BISHOP] | them[Piece.QUEEN])) != 0
+				|| (Bitboard.rookAttacks(sq, occupied) & (them[Piece.ROOK] | them[Piece.QUEEN])) != 0;
+	}
+	
+	// every piece of either color attacking sq: each piece type's attacks are worked out from sq itself,
+	// and whatever stands where they land attacks sq back
+	public long attackersTo(int sq, long occupied) {
+		long[] white = bitboards[Side.WHITE.ordinal()];
+		long[] black = bitboards[Side.BLACK.ordinal()];
+		long diagonals = white[Piece.BISHOP] | white[Piece.QUEEN] | black[Piece.BISHOP] | black[Piece.QUEEN];
+		long straights = white[Piece.ROOK] | white[Piece.QUEEN] | black[Piece.ROOK] | black[Piece.QUEEN];
+		
+		return (Bitboard.pawnAttacks(sq, Side.WHITE) & black[Piece.PAWN])
+				| (Bitboard.pawnAttacks(sq, Side.BLACK) & white[Piece.PAWN])
+				| (Bitboard.knightAttacks(sq) & (white[Piece.KNIGHT] | black[Piece.KNIGHT]))
+				| (Bitboard.kingAttacks(sq) & (white[Piece.KING] | black[Piece.KING]))
+				| (Bitboard.bishopAttacks(sq, occupied) & diagonals)
+				| (Bitboard.rookAttacks(sq, occupied) & straights);
 	}
 	
-	public boolean attacked(Posn p, Side s) {
-		return pieces.entrySet()
-				.stream()
-				.filter(e -> e.getValue().isColor(s.opponent()))
-				.anyMatch(e -> e.getValue().attacks(this, p, e.getKey()));
+	public long computeCheckers() {
+		long king = bitboards[turn.ordinal()][Piece.KING];
+		if (king == 0) {
+			return 0;
+		}
+		return attackersTo(Bitboard.first(king), occupied) & occupancy[turn.opponent().ordinal()];
 	}
 	
 	public Posn getKing(Side s) {
-		//noinspection OptionalGetWithoutIsPresent
-		return pieces.entrySet().stream()
-				.filter(e -> e.getValue().isColor(s) && e.getValue().isKing())
-				.findFirst()
-				.get()
-				.getKey();
+		return Bitboard.posn(kingSquare(s));
+	}
+	
+	public int kingSquare(Side s) {
+		return Bitboard.first(bitboards[s.ordinal()][Piece.KING]);
 	}
 	
 	public boolean samePosition(Board other) {
-		return fen().equals(other.fen());
+		return key == other.key;
 	}
 	
 	public boolean equals(Object other) {
-		return samePosition((Board) other);
+		return other instanceof Board && samePosition((Board) other);
+	}
+	
+	public int hashCode() {
+		return (int) (key ^ (key >>> 32));
 	}
 
 	public void unpassant(Posn p) {
@@ -673,7 +819,11 @@ class Board {
 //				.peek(e -> e.getValue().unpassant());
 	}
 	public void unpassant() {
-		pieces.forEach((k, v) -> v.unpassant());
+		long pawns = bitboards[0][Piece.PAWN] | bitboards[1][Piece.PAWN];
+		while (pawns != 0) {
+			squares[Bitboard.first(pawns)].unpassant();
+			pawns &= pawns - 1;
+		}
 		
 //		Stream<Entry<Posn, Piece>> unpassantedPawns = pieces.entrySet()
 //				.stream()
@@ -694,63 +844,21 @@ class Board {
 		return ans;
 	}
 
-	public boolean endOfGame() {
-		return fiftyMoveDraw() || insufficientMaterial() || 
-				stalemated(Side.WHITE) || stalemated(Side.BLACK) ||
-				checkmated(Side.WHITE) || checkmated(Side.BLACK);
-	}
-
-	public boolean canCastleTo(Posn p) {
-		return isPiece(p) && !get(p).get().moved;
-	}
-	public boolean canCastleThrough(Posn p, Side color) {
-		return !isPiece(p) && !attacked(p, color);
-	}
-
-	public int heuristicValue() {
-		if (checkmated(Side.WHITE)) {
-			return Integer.MIN_VALUE;
-		}
-		if (checkmated(Side.BLACK)) {
-			return Integer.MAX_VALUE;
-		}
-		if (fiftyMoveDraw() || insufficientMaterial() || stalemated(Side.WHITE) || stalemated(Side.BLACK)) {
-			return 0;
-		}
-		 
-		return pieces.values()
-				.stream()
-				.map(Piece::numericValue)
-				.mapToInt(Integer::intValue).sum();
-	}
-
+	// KQkq, or the rook's file where another rook stands further out and KQkq would mean that one (X-FEN)
 	public String addCastlingFen() {
 		String ans = "";
-		Piece whiteKing = get(getKing(Side.WHITE)).get();
-		if (!whiteKing.moved) {
-			Posn p = new Posn(0, 7);
-			//noinspection OptionalGetWithoutIsPresent
-			if (isPiece(p) && !get(p).get().moved) {
-				ans += "Q";
-			}
-			p = new Posn(7, 7);
-			//noinspection OptionalGetWithoutIsPresent
-			if (isPiece(p) && !get(p).get().moved) {
-				ans += "K";
-			}
-		}
-		Piece blackKing = get(getKing(Side.BLACK)).get();
-		if (!blackKing.moved) {
-			Posn p = new Posn(0, 0);
-			//noinspection OptionalGetWithoutIsPresent
-			if (isPiece(p) && !get(p).get().moved) {
-				ans += "q";
-			}
-			p = new Posn(0, 7);
-			//noinspection OptionalGetWithoutIsPresent
-			if (isPiece(p) && !get(p).get().moved) {
-				ans += "k";
+		for (int right = WHITE_KINGSIDE; right <= BLACK_QUEENSIDE; right <<= 1) {
+			if ((castling & right) == 0) {
+				continue;
 			}
+			boolean white = right <= WHITE_QUEENSIDE;
+			boolean kingside = right == WHITE_KINGSIDE || right == BLACK_KINGSIDE;
+			int rook = castlingRook(right);
+			int corner = (rook & ~7) | (kingside ? 7 : 0);
+			long outside = Bitboard.BETWEEN[rook][corner] | (rook == corner ? 0 : Bitboard.bit(corner));
+			String letter = (outside & bitboards[(white ? Side.WHITE : Side.BLACK).ordinal()][Piece.ROOK]) == 0
+					? (kingside ? "k" : "q") : "" + (char) ('a' + (rook & 7));
+			ans += white ? letter.toUpperCase() : letter;
 		}
 		
 		if (ans.equals("")) {
@@ -759,11 +867,149 @@ class Board {
 		
 		return ans;
 	}
+	
+	public String addEnpassantFen() {
+		if (enpassant < 0) {
+			return "-";
+		}
+		return Action.stringify(Bitboard.posn(enpassant));
+	}
 
 	public Optional<Posn> getEnpassantable() {
-		return pieces.entrySet().stream()
-				.filter(e -> e.getValue().isEnpassantable())
-				.map(Entry::getKey)
-				.findFirst();
+		long pawns = bitboards[0][Piece.PAWN] | bitboards[1][Piece.PAWN];
+		while (pawns != 0) {
+			int sq = Bitboard.first(pawns);
+			if (squares[sq].isEnpassantable()) {
+				return Optional.of(Bitboard.posn(sq));
+			}
+			pawns &= pawns - 1;
+		}
+		return Optional.empty();
+	}
+}
+
+class UndoInfo {
+	int from;
+	int to;
+	Piece mover;
+	boolean moved;
+	
+	Piece captured;
+	int capturedSquare;
+	
+	int rookFrom;
+	int rookTo;
+	boolean rookMoved;
+	
+	int castling;
+	int enpassant;
+	int fiftyMoveCounter;
+	long key;
+	long checkers;
+}
+
+class ExamplesBoard {
+	// the position after move and after taking it back, each with whether the key came back too
+	String[] makeUnmake(String fen, String move) {
+		Board b = Board.fromFen(fen);
+		long key = b.key;
+		UndoInfo u = new UndoInfo();
+		b.make(Moves.fromUci(b, move), u);
+		String made = b.fullFen();
+		b.unmake(u);
+		return new String[] {made, b.fullFen(), "" + (b.key == key)};
+	}
+
+	void testCastling(Tester t) {
+		t.checkExpect(makeUnmake("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1", "e1g1"),
+				new String[] {"r3k2r/8/8/8/8/8/8/R4RK1 b kq - 1 1", "r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1", "true"});
+		t.checkExpect(makeUnmake("r3k2r/8/8/8/8/8/8/R3K2R b KQkq - 0 1", "e8c8"),
+				new String[] {"2kr3r/8/8/8/8/8/8/R3K2R w KQ - 1 1", "r3k2r/8/8/8/8/8/8/R3K2R b KQkq - 0 1", "true"});
+		// a rook captured on its corner takes its side's right with it
+		t.checkExpect(makeUnmake("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1", "a1a8"),
+				new String[] {"R3k2r/8/8/8/8/8/8/4K2R b Kk - 0 1", "r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1", "true"});
+	}
+
+	void testEnpassant(Tester t) {
+		t.checkExpect(makeUnmake("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1", "e5d6"),
+				new String[] {"4k3/8/3P4/8/8/8/8/4K3 b - - 0 1", "4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1", "true"});
+		t.checkExpect(makeUnmake("4k3/8/8/8/5p2/8/4P3/4K3 w - - 3 1", "e2e4"),
+				new String[] {"4k3/8/8/8/4Pp2/8/8/4K3 b - e3 0 1", "4k3/8/8/8/5p2/8/4P3/4K3 w - - 3 1", "true"});
+	}
+
+	void testPromotion(Tester t) {
+		t.checkExpect(makeUnmake("1r2k3/P7/8/8/8/8/8/4K3 w - - 0 1", "a7b8q"),
+				new String[] {"1Q2k3/8/8/8/8/8/8/4K3 b - - 0 1", "1r2k3/P7/8/8/8/8/8/4K3 w - - 0 1", "true"});
+		t.checkExpect(makeUnmake("4k3/8/8/8/8/8/p7/4K3 b - - 0 1", "a2a1n"),
+				new String[] {"4k3/8/8/8/8/8/8/n3K3 w - - 0 1", "4k3/8/8/8/8/8/p7/4K3 b - - 0 1", "true"});
+	}
+
+	// the same for a move given in SAN, which unlike UCI tells a Chess960 castle from a king move
+	String[] makeUnmakeSan(String fen, String san) {
+		Board b = Board.fromFen(fen);
+		long key = b.key;
+		UndoInfo u = new UndoInfo();
+		b.make(Moves.fromSan(b, san), u);
+		String made = b.fullFen();
+		b.unmake(u);
+		return new String[] {made, b.fullFen(), "" + (b.key == key)};
+	}
+
+	void testCastling960(Tester t) {
+		// the king already on its square, and the king and rook each on the other's
+		t.checkExpect(makeUnmakeSan("4k3/8/8/8/8/8/8/6KR w K - 0 1", "O-O"),
+				new String[] {"4k3/8/8/8/8/8/8/5RK1 b - - 1 1", "4k3/8/8/8/8/8/8/6KR w K - 0 1", "true"});
+		t.checkExpect(makeUnmakeSan("4k3/8/8/8/8/8/8/5KR1 w K - 0 1", "O-O"),
+				new String[] {"4k3/8/8/8/8/8/8/5RK1 b - - 1 1", "4k3/8/8/8/8/8/8/5KR1 w K - 0 1", "true"});
+		t.checkExpect(makeUnmakeSan("3rk3/8/8/8/8/8/8/RK6 w Q - 0 1", "O-O-O"),
+				new String[] {"3rk3/8/8/8/8/8/8/2KR4 b - - 1 1", "3rk3/8/8/8/8/8/8/RK6 w Q - 0 1", "true"});
+		t.checkExpect(makeUnmakeSan("rk6/8/8/8/8/8/8/4K3 b q - 0 1", "O-O-O"),
+				new String[] {"2kr4/8/8/8/8/8/8/4K3 w - - 1 1", "rk6/8/8/8/8/8/8/4K3 b q - 0 1", "true"});
+	}
+
+	void testCastling960Rules(Tester t) {
+		// the rook shields the king from the a1 rook until it castles away
+		t.checkExpect(Moves.fromSan(Board.fromFen("4k3/8/8/8/8/8/8/rRK5 w Q - 0 1"), "O-O-O"), Moves.NONE);
+		t.checkExpect(Moves.fromSan(Board.fromFen("4k3/8/8/8/8/8/8/1RK5 w Q - 0 1"), "O-O-O") != Moves.NONE, true);
+		// a piece on the rook's destination blocks, even though the king goes nowhere near it
+		t.checkExpect(Moves.fromSan(Board.fromFen("4k3/8/8/8/8/8/8/R1KB4 w Q - 0 1"), "O-O-O"), Moves.NONE);
+		// moving the rook loses its right only, and an inner rook's right is written with its file
+		Board b = Board.fromFen("4k3/8/8/8/8/8/8/1R1K2R1 w KQ - 0 1");
+		b.make(Moves.fromUci(b, "b1a1"), new UndoInfo());
+		t.checkExpect(b.fullFen(), "4k3/8/8/8/8/8/8/R2K2R1 b K - 1 1");
+		t.checkExpect(Board.fromFen("4k3/8/8/8/8/8/8/4K1RR w G - 0 1").fullFen(), "4k3/8/8/8/8/8/8/4K1RR w G - 0 1");
+	}
+
+	// the moves under b, to the given depth, after which b was not exactly as it had been
+	int unrestored(Board b, int depth) {
+		if (depth == 0) {
+			return 0;
+		}
+		String fen = b.fullFen();
+		long key = b.key;
+		long checkers = b.checkers;
+		int ans = 0;
+		MoveList list = new MoveList();
+		MoveGenerator.generate(b, b.turn, list);
+		UndoInfo u = new UndoInfo();
+		for (int i = 0; i < list.size(); i++) {
+			int move = list.get(i);
+			if (!MoveGenerator.legal(b, list, move)) {
+				continue;
+			}
+			b.make(move, u);
+			ans += unrestored(b, depth - 1);
+			b.unmake(u);
+			if (!b.fullFen().equals(fen) || b.key != key || b.checkers != checkers) {
+				ans++;
+			}
+		}
+		return ans;
+	}
+
+	void testEveryMoveRestored(Tester t) {
+		for (String[] position : Perft.REFERENCE) {
+			t.checkExpect(unrestored(Board.fromFen(position[1]), 2), 0, position[0]);
+		}
 	}
-}
\ No newline at end of file
+}
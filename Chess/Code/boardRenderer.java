@@ -0,0 +1,152 @@
+import java.awt.*;
+import javalib.impworld.*;
+import javalib.worldimages.*;
+
+// draws the board every frame without composing images or making Posns: each square's look is boiled down to
+// a number, the image for each number is composed the first time it is needed, and a square's image is only
+// looked up again when its number changes. whether a king is in check is only worked out for new positions.
+class BoardRenderer {
+	static final int SIZE = Piece.SIZE;
+
+	static final Color LIGHT = new Color(240, 217, 181);
+	static final Color DARK = new Color(181, 136, 99);
+	static final WorldImage LIGHT_SQUARE = new RectangleImage(SIZE, SIZE, "solid", LIGHT);
+	static final WorldImage DARK_SQUARE = new RectangleImage(SIZE, SIZE, "solid", DARK);
+
+	static final Color LIGHT_PREVIOUS_COLOR = new Color(171, 162, 58);
+	static final Color DARK_PREVIOUS_COLOR = new Color(206, 210, 107);
+	static final WorldImage LIGHT_PREVIOUS_SQUARE = new RectangleImage(SIZE, SIZE, "solid", LIGHT_PREVIOUS_COLOR);
+	static final WorldImage DARK_PREVIOUS_SQUARE = new RectangleImage(SIZE, SIZE, "solid", DARK_PREVIOUS_COLOR);
+
+	static final WorldImage SELECTED_PIECE_BG_DARK = new RectangleImage(SIZE, SIZE, "solid", new Color(100, 110, 64));
+	static final WorldImage SELECTED_PIECE_BG_LIGHT = new RectangleImage(SIZE, SIZE, "solid", new Color(129, 150, 105));
+
+	static final WorldImage POSSIBLE_MOVES_BG_DARK = new OverlayImage(new CircleImage(SIZE/6, "solid", new Color(100, 110, 64)), DARK_SQUARE);
+	static final WorldImage POSSIBLE_MOVES_BG_LIGHT = new OverlayImage(new CircleImage(SIZE/6, "solid", new Color(129, 150, 105)), LIGHT_SQUARE);
+
+	static final WorldImage POSSIBLE_CAPTURES_BG_DARK = new OverlayImage(new CircleImage(SIZE/2, "solid", DARK), SELECTED_PIECE_BG_LIGHT);
+	static final WorldImage POSSIBLE_CAPTURES_BG_LIGHT = new OverlayImage(new CircleImage(SIZE/2, "solid", LIGHT), SELECTED_PIECE_BG_LIGHT);
+
+	static final WorldImage CHECK_BG = new CircleImage(SIZE/2, "solid", Color.RED);
+
+	// what is behind the piece, in order of precedence from the bottom up
+	static final int PLAIN = 0;
+	static final int PREVIOUS = 1;
+	static final int CHECK = 2;
+	static final int TARGET = 3;
+	static final int CURRENT = 4;
+	static final int KINDS = 5;
+
+	// a square's look: no piece or one of the twelve, times the kinds of background, times light or dark
+	static final int LOOKS = 13 * KINDS * 2;
+
+	// the composed images by look, shared by every renderer
+	static final WorldImage[] composed = new WorldImage[LOOKS];
+
+	// the look and image of each square at the last frame, -1 before the first
+	final int[] shown = new int[64];
+	final WorldImage[] images = new WorldImage[64];
+
+	// the kings in check in the position with key checkedKey
+	long kingsInCheck;
+	long checkedKey;
+	boolean checked;
+
+	BoardRenderer() {
+		for (int sq = 0; sq < 64; sq++) {
+			shown[sq] = -1;
+		}
+	}
+
+	public void draw(Board b, WorldScene ans, boolean flipped) {
+		if (!checked || b.key != checkedKey) {
+			kingsInCheck = kingsInCheck(b);
+			checkedKey = b.key;
+			checked = true;
+		}
+		int current = square(b.current);
+		int start = square(b.start);
+		int end = square(b.end);
+
+		for (int sq = 0; sq < 64; sq++) {
+			int look = look(b, sq, current, start, end);
+			if (look != shown[sq]) {
+				shown[sq] = look;
+				images[sq] = image(look, b.squares[sq]);
+			}
+
+			int c = sq & 7;
+			int r = sq >>> 3;
+			if (flipped) {
+				c = 7 - c;
+				r = 7 - r;
+			}
+			ans.placeImageXY(images[sq], (int) ((c + 0.5) * SIZE), (r + 1) * SIZE);
+		}
+	}
+
+	public int look(Board b, int sq, int current, int start, int end) {
+		Piece pi = b.squares[sq];
+		int kind = PLAIN;
+		if (sq == current && pi != null) {
+			kind = CURRENT;
+		}
+		else if (Bitboard.has(b.targets, sq)) {
+			kind = TARGET;
+		}
+		else if (Bitboard.has(kingsInCheck, sq)) {
+			kind = CHECK;
+		}
+		else if (sq == start || sq == end) {
+			kind = PREVIOUS;
+		}
+
+		int piece = pi == null ? 0 : 1 + pi.type() * 2 + pi.color.ordinal();
+		boolean light = ((sq & 7) + (sq >>> 3)) % 2 == 0;
+		return (piece * KINDS + kind) * 2 + (light ? 1 : 0);
+	}
+
+	// the image of a look, composed from the piece on the square the first time the look is seen
+	public static WorldImage image(int look, Piece pi) {
+		if (composed[look] == null) {
+			boolean light = look % 2 == 1;
+			int kind = look / 2 % KINDS;
+			WorldImage background = background(kind, light, pi != null);
+			composed[look] = pi == null ? background : pi.image().overlayImages(background);
+		}
+		return composed[look];
+	}
+
+	public static WorldImage background(int kind, boolean light, boolean piece) {
+		switch (kind) {
+			case PREVIOUS:
+				return light ? LIGHT_PREVIOUS_SQUARE : DARK_PREVIOUS_SQUARE;
+			case CHECK:
+				return CHECK_BG.overlayImages(light ? LIGHT_SQUARE : DARK_SQUARE);
+			case TARGET:
+				if (piece) {
+					return light ? POSSIBLE_CAPTURES_BG_LIGHT : POSSIBLE_CAPTURES_BG_DARK;
+				}
+				return light ? POSSIBLE_MOVES_BG_LIGHT : POSSIBLE_MOVES_BG_DARK;
+			case CURRENT:
+				return light ? SELECTED_PIECE_BG_LIGHT : SELECTED_PIECE_BG_DARK;
+			default:
+				return light ? LIGHT_SQUARE : DARK_SQUARE;
+		}
+	}
+
+	public static long kingsInCheck(Board b) {
+		long ans = 0;
+		for (Side s : Side.values()) {
+			if (b.bitboards[s.ordinal()][Piece.KING] != 0 && b.inCheck(s)) {
+				ans |= b.bitboards[s.ordinal()][Piece.KING];
+			}
+		}
+		return ans;
+	}
+
+	// the square of p, -1 if it is off the board
+	public static int square(Posn p) {
+		return Board.inBounds(p) ? Bitboard.square(p) : -1;
+	}
+}
@@ -1,5 +1,6 @@
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.*;
 import tester.*;
 import javalib.impworld.*;
 import java.awt.*;
@@ -8,7 +9,7 @@ import javalib.worldimages.*;
 class ChessWorld extends World {
 	static final int WIDTH = Board.FULL_SIZE;
 	static final int HEIGHT = Board.FULL_SIZE+Piece.SIZE;
-	static final double TICK_SPEED = 1/Double.MAX_VALUE;
+	static final double TICK_SPEED = 1.0/60; // one frame; the AI thinks on its own thread, so frames never wait for it
 
 	public static double enforcePositive(double n) {
 		if (n > 0) return n;
@@ -36,8 +37,30 @@ class ChessWorld extends World {
 	boolean playing;
 	
 	boolean flipped;
+	// keeps the square images from frame to frame
+	final BoardRenderer renderer = new BoardRenderer();
+	
+	// how the game stands in the position with key endKey after endStates states, worked out once per position
+	// rather than every frame; the count of states tells a repeated position from the one an undo goes back to
+	long endKey;
+	int endStates = -1;
+	boolean checkmate;
+	boolean stalemate;
+	boolean insufficientMaterial;
+	boolean repetition;
 	
 	List<State> states = new ArrayList<>();
+	
+	// the AI's move while it is still thinking it over on the engine thread
+	final ExecutorService engine = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "engine");
+		t.setDaemon(true);
+		return t;
+	});
+	CompletableFuture<Action> thinking;
+	Player thinker;
+	
+	long lastTick;
 
 	ChessWorld(double initTime, double increment, Player white, Player black, Variant v) {
 		if (white.color.equals(Side.BLACK) || black.color.equals(Side.WHITE)) {
@@ -97,7 +120,9 @@ class ChessWorld extends World {
 	}
 
 	public void launchGame() {
+		cancelThinking();
 		playing = true;
+		lastTick = System.nanoTime();
 		
 		timeWhite = initTime;
 		timeBlack = initTime;
@@ -116,7 +141,7 @@ class ChessWorld extends World {
 		
 		addTime(ans);
 		
-		board.display(ans, flipped);
+		renderer.draw(board, ans, flipped);
 		
 		addEndOfGameMsgs(ans);
 		
@@ -134,8 +159,21 @@ class ChessWorld extends World {
 		}
 	}
 
+	public void checkEndOfGame() {
+		if (board.key == endKey && states.size() == endStates) {
+			return;
+		}
+		endKey = board.key;
+		endStates = states.size();
+		checkmate = board.checkmated(turn());
+		stalemate = board.stalemated(turn());
+		insufficientMaterial = board.insufficientMaterial();
+		repetition = repetitionCount() >= 3;
+	}
+
 	public void addEndOfGameMsgs(WorldScene ans) {
-		if (board.checkmated(turn())) {
+		checkEndOfGame();
+		if (checkmate) {
 			ans.placeImageXY(new TextImage(turn().toString() + " is Checkmated!", Piece.SIZE/2, Color.GREEN), WIDTH/2, HEIGHT/2 + Piece.SIZE/2);
 			if (playing) {
 				if (turn().equals(Side.WHITE)) {
@@ -148,7 +186,7 @@ class ChessWorld extends World {
 			playing = false;
 		}
 		
-		if (board.stalemated(turn())) {
+		if (stalemate) {
 			ans.placeImageXY(new TextImage("Stalemate!", Piece.SIZE/2, Color.GREEN), WIDTH/2, HEIGHT/2 + Piece.SIZE/2);
 			if (playing) {
 				white.sessionScore += 0.5;
@@ -176,7 +214,7 @@ class ChessWorld extends World {
 			playing = false;
 		}
 		
-		if (board.insufficientMaterial()) {
+		if (insufficientMaterial) {
 			ans.placeImageXY(new TextImage("Insufficient Material", Piece.SIZE/2, Color.GREEN), WIDTH/2, HEIGHT/2 + Piece.SIZE/2);
 			if (playing) {
 				white.sessionScore += 0.5;
@@ -198,7 +236,7 @@ class ChessWorld extends World {
 			playing = false;
 		}
 		
-		if (repetitionCount() >= 3) {
+		if (repetition) {
 			ans.placeImageXY(new TextImage("Three Repetition Draw", Piece.SIZE/2, Color.GREEN), WIDTH/2, HEIGHT/2 + Piece.SIZE/2);
 			if (playing) {
 				white.sessionScore += 0.5;
@@ -223,28 +261,82 @@ class ChessWorld extends World {
 		return new TextImage(minutes + ":" + secs, Piece.SIZE/2, Color.BLACK);
 	}
 
+	// the side to move is charged the real time since the last tick, whether a person or the engine is thinking
 	public void onTick() {
-		if (playing) {
-			if (turn().equals(Side.WHITE)) {
-				timeWhite -= TICK_SPEED;
-			}
-			else {
-				timeBlack -= TICK_SPEED;
+		long now = System.nanoTime();
+		double elapsed = (now - lastTick) / 1e9;
+		lastTick = now;
+		if (!playing) {
+			cancelThinking();
+			return;
+		}
+		chargeTime(elapsed);
+		
+		if (activePlayer().isAI) {
+			if (thinking == null) {
+				if (!MoveGenerator.hasLegalMove(board)) {
+					return;
+				}
+				
+				if (turn().equals(Side.WHITE)) {
+					activePlayer().setClock(timeWhite, increment);
+				}
+				else {
+					activePlayer().setClock(timeBlack, increment);
+				}
+				thinker = activePlayer();
+				thinking = thinker.think(board, engine);
 			}
-			
-			if (activePlayer().isAI) {
+			else if (thinking.isDone()) {
+				Action bestMove = thinking.join();
+				Player mover = thinker;
+				thinking = null;
+				thinker = null;
+				if (bestMove == null) {
+					return;
+				}
+				
 				states.add(new State(board, timeWhite, timeBlack));
-				board = activePlayer().apply(board);
-				switchActivePlayer();
+				board = bestMove.apply(board);
+				System.out.print("the best move is: ");
+				bestMove.print(board);
+				
 				incrementTime();
+				switchActivePlayer();
 				selected = new Posn(-1, -1);
+				// the engine thread is free while a person thinks, so the AI thinks along on it
+				if (!activePlayer().isAI) {
+					mover.ponder(board, engine);
+				}
 			}
 		}
 	}
+	
+	// abandons the AI's thinking and pondering, when the game it was thinking about is over or has been taken back
+	public void cancelThinking() {
+		if (thinking != null) {
+			thinker.stopThinking();
+			thinking.cancel(false);
+			thinking = null;
+			thinker = null;
+		}
+		white.stopPondering();
+		black.stopPondering();
+	}
 
 	Posn selected = new Posn(-1, -1);
 	
 
+	// takes the time the side to move spent thinking off its clock
+	public void chargeTime(double seconds) {
+		if (turn().equals(Side.WHITE)) {
+			timeWhite -= seconds;
+		}
+		else {
+			timeBlack -= seconds;
+		}
+	}
+
 	public void incrementTime() {
 		if (turn().equals(Side.WHITE)) {
 			timeWhite += increment;
@@ -377,6 +469,7 @@ class ChessWorld extends World {
 		if (states.size() <= 1) {
 			return;
 		}
+		cancelThinking();
 		
 		State s = states.get(states.size()-1);
 		states.remove(states.size()-1);
@@ -400,8 +493,8 @@ class State {
 	
 	State(Board board, double timeWhite, double timeBlack) {
 		this.board = board;
-		this.timeBlack = Math.max(timeWhite, 0);
-		this.timeWhite = Math.max(timeBlack, 0);
+		this.timeWhite = Math.max(timeWhite, 0);
+		this.timeBlack = Math.max(timeBlack, 0);
 	}
 	
 	public boolean samePosition(State other) {
@@ -414,9 +507,11 @@ enum Variant {
 }
 
 class Chess {
-	ChessWorld c = new ChessWorld(15, 0, new Human(Side.WHITE), new SmartAI(Side.BLACK), Variant.STANDARD);
+	SmartAI ai = new SmartAI(Side.BLACK);
+	ChessWorld c = new ChessWorld(15, 0, new Human(Side.WHITE), ai, Variant.STANDARD);
 
 	void testChess(Tester t) {
+		ai.verbose = true;
 		c.launchGame();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+// scores a position in centipawns from white's point of view, for SmartAI to search with;
+// evaluators may be called from several search threads at once
+interface Evaluator {
+	int evaluate(Board b);
+}
+
+// material and piece-square tables only, as the board keeps them up to date itself
+class MaterialEvaluator implements Evaluator {
+	public int evaluate(Board b) {
+		return b.staticScore;
+	}
+}
@@ -0,0 +1,440 @@
+import java.io.*;
+import java.time.*;
+import java.time.format.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+// plays games between two players without a window, several at a time, and reports the score, an Elo estimate
+// and the games as PGN. every game gets fresh players, and the first player takes white in even games and black
+// in odd ones. games are played in pairs from the same start, a few random plies into the game (and a random
+// Chess960 position with -960), so that players which search the same way every time don't just play one game
+// over and over. run it from the Pictures folder, e.g.
+//   java Match smart:depth=3 random                           100 games at depth 3 against random moves
+//   java Match -games 200 -tc 10+0.1 -pgn out.pgn smart smart:nonull
+//   java Match -960 -concurrency 2 smart:threads=2 smart:material
+// options: -games n, -concurrency n (default one game per core), -tc seconds[+increment] (default no clock),
+// -960, -openingplies n (random plies before the players take over, default 4), -maxplies n (longer games are
+// drawn), -pgn file
+// players: random, or smart followed by any of depth=n, threads=n, hash=megabytes, nonull, nolmr, noext,
+// material, book=file, tb=folder after a colon, separated by commas
+class Match {
+	static final int MAX_PLIES = 600;
+	static final int OPENING_PLIES = 4;
+
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		Piece.headless = true;
+		Match m = new Match();
+		List<String> players = new ArrayList<>();
+		String pgn = null;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-games")) {
+				m.games = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-concurrency")) {
+				m.concurrency = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-tc")) {
+				String[] tc = args[++i].split("\\+");
+				m.time = Double.parseDouble(tc[0]);
+				m.increment = tc.length > 1 ? Double.parseDouble(tc[1]) : 0;
+			}
+			else if (args[i].equals("-960")) {
+				m.variant = Variant.CHESS960;
+			}
+			else if (args[i].equals("-openingplies")) {
+				m.openingPlies = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-maxplies")) {
+				m.maxPlies = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-pgn")) {
+				pgn = args[++i];
+			}
+			else {
+				players.add(args[i]);
+			}
+		}
+		if (players.size() != 2) {
+			System.out.println("usage: java Match [-games n] [-concurrency n] [-tc seconds[+increment]] [-960] "
+					+ "[-openingplies n] [-maxplies n] [-pgn file] first second");
+			return;
+		}
+
+		m.setPlayers(players.get(0), player(players.get(0)), players.get(1), player(players.get(1)));
+		List<MatchGame> played = m.run();
+		System.out.println(m.summary());
+
+		if (pgn != null) {
+			try (PrintWriter out = new PrintWriter(new FileWriter(pgn))) {
+				for (MatchGame g : played) {
+					out.println(g.pgn());
+				}
+			}
+		}
+	}
+
+	// a player from its name on the command line
+	public static Function<Side, Player> player(String spec) throws IOException {
+		String[] parts = spec.split(":", 2);
+		if (parts[0].equals("random")) {
+			return RanDumbAI::new;
+		}
+		if (!parts[0].equals("smart")) {
+			throw new IllegalArgumentException("unknown player: " + spec);
+		}
+
+		int depth = -1; // SmartAI's own default, which leaves a clock alone
+		int threads = 1;
+		int hash = SmartAI.HASH_MEGABYTES;
+		boolean nullMove = true;
+		boolean lateMoveReductions = true;
+		boolean checkExtensions = true;
+		boolean material = false;
+		// books and tables are mapped once and read by every game at once
+		OpeningBook book = null;
+		Tablebases tablebases = null;
+		for (String setting : parts.length > 1 ? parts[1].split(",") : new String[0]) {
+			String[] kv = setting.split("=", 2);
+			switch (kv[0]) {
+			case "depth":
+				depth = Integer.parseInt(kv[1]);
+				break;
+			case "threads":
+				threads = Integer.parseInt(kv[1]);
+				break;
+			case "hash":
+				hash = Integer.parseInt(kv[1]);
+				break;
+			case "nonull":
+				nullMove = false;
+				break;
+			case "nolmr":
+				lateMoveReductions = false;
+				break;
+			case "noext":
+				checkExtensions = false;
+				break;
+			case "material":
+				material = true;
+				break;
+			case "book":
+				book = new OpeningBook(kv[1]);
+				break;
+			case "tb":
+				tablebases = Tablebases.load(kv[1]);
+				break;
+			default:
+				throw new IllegalArgumentException("unknown setting: " + setting);
+			}
+		}
+
+		int d = depth;
+		int t = threads;
+		int h = hash;
+		boolean n = nullMove;
+		boolean l = lateMoveReductions;
+		boolean c = checkExtensions;
+		boolean m = material;
+		OpeningBook bk = book;
+		Tablebases tb = tablebases;
+		return side -> {
+			SmartAI ai = new SmartAI(side, h, t);
+			if (d > 0) {
+				ai.setDepth(d);
+			}
+			ai.nullMove = n;
+			ai.lateMoveReductions = l;
+			ai.checkExtensions = c;
+			if (m) {
+				ai.setEvaluator(new MaterialEvaluator());
+			}
+			ai.setBook(bk);
+			ai.setTablebases(tb);
+			return ai;
+		};
+	}
+
+	// the Elo difference that scoring this fraction of the points corresponds to
+	public static double elo(double score) {
+		return 400 * Math.log10(score / (1 - score));
+	}
+
+	String firstName;
+	String secondName;
+	Function<Side, Player> first;
+	Function<Side, Player> second;
+
+	int games = 100;
+	int concurrency = Runtime.getRuntime().availableProcessors();
+	double time = -1; // seconds on each clock, or -1 for no clock
+	double increment = 0;
+	Variant variant = Variant.STANDARD;
+	int openingPlies = OPENING_PLIES;
+	int maxPlies = MAX_PLIES;
+	final Random random = new Random();
+
+	// from the first player's point of view
+	int wins;
+	int draws;
+	int losses;
+
+	public void setPlayers(String firstName, Function<Side, Player> first, String secondName, Function<Side, Player> second) {
+		this.firstName = firstName;
+		this.first = first;
+		this.secondName = secondName;
+		this.second = second;
+	}
+
+	// plays every game and returns them in the order they were scheduled
+	public List<MatchGame> run() throws InterruptedException, ExecutionException {
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, concurrency));
+		List<Future<MatchGame>> futures = new ArrayList<>();
+		Board start = null;
+		int[] opening = null;
+		for (int i = 0; i < games; i++) {
+			if (i % 2 == 0) {
+				start = new Board(variant);
+				opening = opening(start);
+			}
+			boolean firstIsWhite = i % 2 == 0;
+			MatchGame g = new MatchGame(i + 1, new Board(start), opening, firstIsWhite ? firstName : secondName,
+					firstIsWhite ? secondName : firstName, time, increment, maxPlies, variant);
+			futures.add(pool.submit(() -> {
+				Player white = (firstIsWhite ? first : second).apply(Side.WHITE);
+				Player black = (firstIsWhite ? second : first).apply(Side.BLACK);
+				try {
+					g.play(white, black);
+				}
+				finally {
+					// a parallel search keeps a pool of its own
+					for (Player p : new Player[] {white, black}) {
+						if (p instanceof SmartAI) {
+							((SmartAI) p).close();
+						}
+					}
+				}
+				record(g, firstIsWhite);
+				return g;
+			}));
+		}
+
+		List<MatchGame> ans = new ArrayList<>();
+		try {
+			for (Future<MatchGame> f : futures) {
+				ans.add(f.get());
+			}
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		return ans;
+	}
+
+	// openingPlies random legal moves from start, stopping early rather than ending the game
+	public int[] opening(Board start) {
+		Board b = new Board(start);
+		UndoInfo u = new UndoInfo();
+		int[] ans = new int[openingPlies];
+		int n = 0;
+		MoveList list = new MoveList();
+		while (n < openingPlies) {
+			MoveGenerator.generate(b, b.turn, list);
+			int[] legal = new int[list.size()];
+			int count = 0;
+			for (int i = 0; i < list.size(); i++) {
+				if (MoveGenerator.legal(b, list, list.get(i))) {
+					legal[count++] = list.get(i);
+				}
+			}
+			if (count == 0) {
+				break;
+			}
+			int move = legal[random.nextInt(count)];
+			b.make(move, u);
+			if (!MoveGenerator.hasLegalMove(b)) {
+				break;
+			}
+			ans[n++] = move;
+		}
+		return Arrays.copyOf(ans, n);
+	}
+
+	public synchronized void record(MatchGame g, boolean firstIsWhite) {
+		if (g.result.equals("1/2-1/2")) {
+			draws++;
+		}
+		else if (g.result.equals("1-0") == firstIsWhite) {
+			wins++;
+		}
+		else {
+			losses++;
+		}
+		System.out.println("game " + g.round + ": " + g.white + " - " + g.black + " " + g.result + " (" + g.termination
+				+ ", " + (g.moves.size() + 1) / 2 + " moves), " + firstName + " +" + wins + " -" + losses + " =" + draws);
+	}
+
+	// the points scored and the Elo difference they suggest, give or take a 95% confidence interval worked out
+	// from how much the single game results spread
+	public synchronized String summary() {
+		int n = wins + draws + losses;
+		String ans = "score of " + firstName + " against " + secondName + ": +" + wins + " -" + losses + " =" + draws;
+		if (n == 0) {
+			return ans;
+		}
+
+		double score = (wins + draws / 2.0) / n;
+		double variance = (wins * Math.pow(1 - score, 2) + draws * Math.pow(0.5 - score, 2) + losses * Math.pow(score, 2)) / n;
+		double margin = 1.96 * Math.sqrt(variance / n);
+		ans += String.format(" (%.1f%%)", 100 * score);
+		if (score <= 0 || score >= 1) {
+			return ans + "\nelo difference: " + (score <= 0 ? "-inf" : "+inf");
+		}
+		// every game ended the same way, which says nothing about how far the result could be off
+		if (variance == 0) {
+			return ans + String.format("\nelo difference: %.1f (no error bar: every game had the same result)", elo(score));
+		}
+
+		double low = score - margin <= 0 ? Double.NEGATIVE_INFINITY : elo(score - margin);
+		double high = score + margin >= 1 ? Double.POSITIVE_INFINITY : elo(score + margin);
+		return ans + String.format("\nelo difference: %.1f +/- %.1f (95%%: %.1f to %.1f)",
+				elo(score), (high - low) / 2, low, high);
+	}
+}
+
+// one game of a match, played out on its own board with its own clocks
+class MatchGame {
+	final int round;
+	final Board start;
+	final int[] opening; // the random plies the game starts with, see Match.opening
+	final String white;
+	final String black;
+	final double time;
+	final double increment;
+	final int maxPlies;
+	final Variant variant;
+
+	final List<String> moves = new ArrayList<>();
+	String result = "*";
+	String termination = "unterminated";
+
+	MatchGame(int round, Board start, int[] opening, String white, String black, double time, double increment, int maxPlies, Variant variant) {
+		this.round = round;
+		this.start = start;
+		this.opening = opening;
+		this.white = white;
+		this.black = black;
+		this.time = time;
+		this.increment = increment;
+		this.maxPlies = maxPlies;
+		this.variant = variant;
+	}
+
+	public void play(Player whitePlayer, Player blackPlayer) {
+		Board b = new Board(start);
+		double[] clocks = {time, time}; // by side
+		List<Long> keys = new ArrayList<>();
+		keys.add(b.key);
+		UndoInfo u = new UndoInfo();
+		for (int move : opening) {
+			moves.add(Moves.san(b, move));
+			b.make(move, u);
+			keys.add(b.key);
+		}
+
+		while (true) {
+			Side s = b.turn;
+			String loss = s.equals(Side.WHITE) ? "0-1" : "1-0";
+			if (!MoveGenerator.hasLegalMove(b)) {
+				end(b.checkers != 0 ? loss : "1/2-1/2", b.checkers != 0 ? "checkmate" : "stalemate");
+				return;
+			}
+			if (b.insufficientMaterial()) {
+				end("1/2-1/2", "insufficient material");
+				return;
+			}
+			if (b.fiftyMoveDraw()) {
+				end("1/2-1/2", "fifty move rule");
+				return;
+			}
+			if (Collections.frequency(keys, b.key) >= 3) {
+				end("1/2-1/2", "threefold repetition");
+				return;
+			}
+			if (moves.size() >= maxPlies) {
+				end("1/2-1/2", "adjudication");
+				return;
+			}
+
+			Player p = s.equals(Side.WHITE) ? whitePlayer : blackPlayer;
+			if (time >= 0) {
+				p.setClock(clocks[s.ordinal()], increment);
+			}
+			long before = System.nanoTime();
+			int move = p.move(new Board(b));
+			if (time >= 0) {
+				clocks[s.ordinal()] -= (System.nanoTime() - before) / 1e9;
+				if (clocks[s.ordinal()] < 0) {
+					end(loss, "time forfeit");
+					return;
+				}
+				clocks[s.ordinal()] += increment;
+			}
+			if (!MoveGenerator.isLegal(b, move)) {
+				end(loss, "illegal move");
+				return;
+			}
+
+			moves.add(Moves.san(b, move));
+			b.make(move, u);
+			keys.add(b.key);
+		}
+	}
+
+	public void end(String result, String termination) {
+		this.result = result;
+		this.termination = termination;
+	}
+
+	// as given on the command line: 10 rather than 10.0, but 0.1 kept as it is
+	public static String seconds(double t) {
+		return t == Math.rint(t) ? Long.toString((long) t) : Double.toString(t);
+	}
+
+	public String pgn() {
+		StringBuilder ans = new StringBuilder();
+		ans.append("[Event \"Match\"]\n");
+		ans.append("[Site \"?\"]\n");
+		ans.append("[Date \"").append(LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy.MM.dd"))).append("\"]\n");
+		ans.append("[Round \"").append(round).append("\"]\n");
+		ans.append("[White \"").append(white).append("\"]\n");
+		ans.append("[Black \"").append(black).append("\"]\n");
+		ans.append("[Result \"").append(result).append("\"]\n");
+		if (variant.equals(Variant.CHESS960)) {
+			ans.append("[Variant \"Chess960\"]\n");
+			ans.append("[SetUp \"1\"]\n");
+			ans.append("[FEN \"").append(start.fullFen()).append("\"]\n");
+		}
+		if (time >= 0) {
+			ans.append("[TimeControl \"").append(seconds(time)).append("+").append(seconds(increment)).append("\"]\n");
+		}
+		ans.append("[Termination \"").append(termination).append("\"]\n\n");
+
+		// movetext, wrapped before 80 columns
+		int column = 0;
+		for (int i = 0; i <= moves.size(); i++) {
+			String token = i == moves.size() ? result : (i % 2 == 0 ? (i / 2 + 1) + ". " : "") + moves.get(i);
+			if (column > 0 && column + 1 + token.length() > 79) {
+				ans.append("\n");
+				column = 0;
+			}
+			else if (column > 0) {
+				ans.append(" ");
+				column++;
+			}
+			ans.append(token);
+			column += token.length();
+		}
+		return ans.append("\n").toString();
+	}
+}
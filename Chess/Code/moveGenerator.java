@@ -0,0 +1,273 @@
+import java.util.*;
+
+// a reusable buffer for the moves of one ply, with the pins they were generated under
+class MoveList {
+	static final int CAPACITY = 256;
+
+	final int[] moves = new int[CAPACITY];
+	final int[] scores = new int[CAPACITY];
+	int size;
+
+	Side side;
+	int kingSquare;
+	long pinned;
+	long checkers;
+	boolean inCheck;
+	
+	// scratch space for the legality tests that have to play the move
+	final UndoInfo undo = new UndoInfo();
+
+	public void clear() {
+		size = 0;
+	}
+
+	public void add(int move) {
+		moves[size++] = move;
+	}
+
+	public int get(int i) {
+		return moves[i];
+	}
+
+	public int size() {
+		return size;
+	}
+	
+	// moves the best scored of the moves from i on to i and returns it
+	public int pick(int i) {
+		int best = i;
+		for (int j = i + 1; j < size; j++) {
+			if (scores[j] > scores[best]) {
+				best = j;
+			}
+		}
+		
+		int move = moves[best];
+		int score = scores[best];
+		moves[best] = moves[i];
+		scores[best] = scores[i];
+		moves[i] = move;
+		scores[i] = score;
+		return move;
+	}
+}
+
+// generates pseudo-legal moves straight from the bitboards; legality is only checked when a move is about to be played
+class MoveGenerator {
+	public static void generate(Board b, Side s, MoveList list) {
+		generate(b, s, list, false);
+	}
+	
+	// only captures, en passant and promotions, for the quiescence search
+	public static void generateCaptures(Board b, Side s, MoveList list) {
+		generate(b, s, list, true);
+	}
+	
+	public static void generate(Board b, Side s, MoveList list, boolean capturesOnly) {
+		list.clear();
+		list.side = s;
+		list.kingSquare = b.kingSquare(s);
+		list.pinned = pinned(b, s);
+		list.checkers = s.equals(b.turn) ? b.checkers
+				: b.attackersTo(list.kingSquare, b.occupied) & b.occupancy[s.opponent().ordinal()];
+		list.inCheck = list.checkers != 0;
+
+		long[] own = b.bitboards[s.ordinal()];
+		long[] them = b.bitboards[s.opponent().ordinal()];
+		// the enemy king is never a target, even when moves are generated for the side not to move
+		long targets = ~b.occupancy[s.ordinal()] & ~them[Piece.KING];
+		if (capturesOnly) {
+			targets &= b.occupancy[s.opponent().ordinal()];
+		}
+
+		generatePawns(b, s, list, capturesOnly);
+
+		for (long bb = own[Piece.KNIGHT]; bb != 0; bb &= bb - 1) {
+			int from = Bitboard.first(bb);
+			add(b, list, from, Piece.KNIGHT, Bitboard.knightAttacks(from) & targets);
+		}
+		for (long bb = own[Piece.BISHOP]; bb != 0; bb &= bb - 1) {
+			int from = Bitboard.first(bb);
+			add(b, list, from, Piece.BISHOP, Bitboard.bishopAttacks(from, b.occupied) & targets);
+		}
+		for (long bb = own[Piece.ROOK]; bb != 0; bb &= bb - 1) {
+			int from = Bitboard.first(bb);
+			add(b, list, from, Piece.ROOK, Bitboard.rookAttacks(from, b.occupied) & targets);
+		}
+		for (long bb = own[Piece.QUEEN]; bb != 0; bb &= bb - 1) {
+			int from = Bitboard.first(bb);
+			long attacks = Bitboard.bishopAttacks(from, b.occupied) | Bitboard.rookAttacks(from, b.occupied);
+			add(b, list, from, Piece.QUEEN, attacks & targets);
+		}
+		for (long bb = own[Piece.KING]; bb != 0; bb &= bb - 1) {
+			int from = Bitboard.first(bb);
+			add(b, list, from, Piece.KING, Bitboard.kingAttacks(from) & targets);
+		}
+
+		if (!list.inCheck && !capturesOnly) {
+			generateCastles(b, s, list);
+		}
+	}
+
+	static void add(Board b, MoveList list, int from, int type, long tos) {
+		for (; tos != 0; tos &= tos - 1) {
+			int to = Bitboard.first(tos);
+			list.add(Moves.encode(from, to, type, b.typeAt(to), 0, 0));
+		}
+	}
+
+	static void generatePawns(Board b, Side s, MoveList list, boolean capturesOnly) {
+		boolean white = s.equals(Side.WHITE);
+		int forward = white ? -8 : 8;
+		int startRow = white ? 6 : 1;
+		int lastRow = white ? 1 : 6;
+		long enemies = b.occupancy[s.opponent().ordinal()] & ~b.bitboards[s.opponent().ordinal()][Piece.KING];
+
+		for (long bb = b.bitboards[s.ordinal()][Piece.PAWN]; bb != 0; bb &= bb - 1) {
+			int from = Bitboard.first(bb);
+			int row = from >>> 3;
+
+			int to = from + forward;
+			if (!Bitboard.has(b.occupied, to)) {
+				if (row == lastRow) {
+					addPromotions(list, from, to, -1);
+				}
+				else if (!capturesOnly) {
+					list.add(Moves.encode(from, to, Piece.PAWN, -1, 0, 0));
+					if (row == startRow && !Bitboard.has(b.occupied, to + forward)) {
+						list.add(Moves.encode(from, to + forward, Piece.PAWN, -1, 0, Moves.DOUBLE_PUSH));
+					}
+				}
+			}
+
+			long attacks = Bitboard.pawnAttacks(from, s);
+			for (long caps = attacks & enemies; caps != 0; caps &= caps - 1) {
+				int target = Bitboard.first(caps);
+				if (row == lastRow) {
+					addPromotions(list, from, target, b.typeAt(target));
+				}
+				else {
+					list.add(Moves.encode(from, target, Piece.PAWN, b.typeAt(target), 0, 0));
+				}
+			}
+
+			if (s.equals(b.turn) && b.enpassant >= 0 && Bitboard.has(attacks, b.enpassant)) {
+				list.add(Moves.encode(from, b.enpassant, Piece.PAWN, Piece.PAWN, 0, Moves.ENPASSANT));
+			}
+		}
+	}
+
+	static void addPromotions(MoveList list, int from, int to, int captured) {
+		list.add(Moves.encode(from, to, Piece.PAWN, captured, Piece.QUEEN, 0));
+		list.add(Moves.encode(from, to, Piece.PAWN, captured, Piece.KNIGHT, 0));
+		list.add(Moves.encode(from, to, Piece.PAWN, captured, Piece.ROOK, 0));
+		list.add(Moves.encode(from, to, Piece.PAWN, captured, Piece.BISHOP, 0));
+	}
+
+	// castling through or into check is ruled out here, so castles need no further legality test. the king and
+	// rook may start anywhere on the back row (Chess960) and end on the g and f or c and d files: the squares
+	// either passes over must be empty but for the two of them, and none the king passes over may be attacked
+	// once the rook has gone from in front of it. a castle is written as the king taking its own rook
+	static void generateCastles(Board b, Side s, MoveList list) {
+		int king = b.kingSquare(s);
+		for (boolean kingside : new boolean[] {true, false}) {
+			int right = Board.castlingRight(s, kingside);
+			if ((b.castling & right) == 0) {
+				continue;
+			}
+			int rook = b.castlingRook(right);
+			int kingTo = (king & ~7) | (kingside ? 6 : 2);
+			int rookTo = (king & ~7) | (kingside ? 5 : 3);
+			long kingPath = Bitboard.BETWEEN[king][kingTo] | Bitboard.bit(kingTo);
+			long rookPath = Bitboard.BETWEEN[rook][rookTo] | Bitboard.bit(rookTo);
+			long others = b.occupied & ~Bitboard.bit(king) & ~Bitboard.bit(rook);
+			if (((kingPath | rookPath) & others) != 0) {
+				continue;
+			}
+
+			long occupied = b.occupied & ~Bitboard.bit(rook);
+			boolean safe = true;
+			for (long path = kingPath; path != 0 && safe; path &= path - 1) {
+				safe = !b.attacked(Bitboard.first(path), s, occupied);
+			}
+			if (safe) {
+				list.add(Moves.encode(king, rook, Piece.KING, -1, 0, Moves.CASTLE));
+			}
+		}
+	}
+
+	// pieces of side s that are the only thing between their king and an enemy slider
+	public static long pinned(Board b, Side s) {
+		int king = b.kingSquare(s);
+		long[] them = b.bitboards[s.opponent().ordinal()];
+		long snipers = (Bitboard.rookAttacks(king, 0) & (them[Piece.ROOK] | them[Piece.QUEEN]))
+				| (Bitboard.bishopAttacks(king, 0) & (them[Piece.BISHOP] | them[Piece.QUEEN]));
+
+		long ans = 0;
+		for (; snipers != 0; snipers &= snipers - 1) {
+			long blockers = Bitboard.BETWEEN[king][Bitboard.first(snipers)] & b.occupied;
+			if (Bitboard.count(blockers) == 1) {
+				ans |= blockers & b.occupancy[s.ordinal()];
+			}
+		}
+		return ans;
+	}
+
+	// whether move, generated into list from b as it is now, leaves its own king safe
+	public static boolean legal(Board b, MoveList list, int move) {
+		int from = Moves.from(move);
+		int to = Moves.to(move);
+
+		if (Moves.isCastle(move)) {
+			return true;
+		}
+		if (from == list.kingSquare) {
+			return !b.attacked(to, list.side, b.occupied ^ Bitboard.bit(from));
+		}
+
+		// en passant takes two pawns off one row at once, which can uncover the king in ways a pin doesn't show
+		if (Moves.isEnpassant(move)) {
+			b.make(move, list.undo);
+			boolean ans = !b.attacked(list.kingSquare, list.side);
+			b.unmake(list.undo);
+			return ans;
+		}
+
+		// out of check: only the king can escape two checkers, and one has to be taken or blocked
+		if (list.inCheck) {
+			if (Bitboard.count(list.checkers) > 1) {
+				return false;
+			}
+			int checker = Bitboard.first(list.checkers);
+			if (!Bitboard.has(Bitboard.BETWEEN[list.kingSquare][checker] | list.checkers, to)) {
+				return false;
+			}
+		}
+
+		return !Bitboard.has(list.pinned, from) || Bitboard.has(Bitboard.LINE[list.kingSquare][from], to);
+	}
+
+	// whether move is one of the legal moves on b, for moves that come from outside the search
+	public static boolean isLegal(Board b, int move) {
+		MoveList list = new MoveList();
+		generate(b, b.turn, list);
+		for (int i = 0; i < list.size(); i++) {
+			if (list.get(i) == move) {
+				return legal(b, list, move);
+			}
+		}
+		return false;
+	}
+
+	// whether the side to move on b has any legal move at all
+	public static boolean hasLegalMove(Board b) {
+		MoveList list = new MoveList();
+		generate(b, b.turn, list);
+		for (int i = 0; i < list.size(); i++) {
+			if (legal(b, list, list.get(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,103 @@
+// the order moves are searched in: the hash move, then captures and promotions by most valuable victim
+// and least valuable attacker, then the killer moves of the ply, then quiet moves by their history
+class MoveOrdering {
+	static final int HASH_MOVE = 1 << 30;
+	static final int CAPTURE = 1 << 28;
+	static final int KILLER = 1 << 27;
+	static final int HISTORY_LIMIT = KILLER - 1;
+
+	final int[][] killers;
+	final int[][][] history = new int[2][64][64];
+
+	long cutoffs;
+	long firstMoveCutoffs;
+
+	MoveOrdering(int maxPly) {
+		killers = new int[maxPly][2];
+	}
+
+	public void score(Board b, MoveList list, int hashMove, int ply) {
+		int[][] sideHistory = history[b.turn.ordinal()];
+		for (int i = 0; i < list.size(); i++) {
+			int move = list.get(i);
+			int from = Moves.from(move);
+			int to = Moves.to(move);
+
+			if (move == hashMove) {
+				list.scores[i] = HASH_MOVE;
+			}
+			else if (Moves.isCapture(move) || Moves.isPromotion(move)) {
+				list.scores[i] = CAPTURE + 16 * victimValue(b, move) - Moves.moved(move);
+			}
+			else if (move == killers[ply][0]) {
+				list.scores[i] = KILLER + 1;
+			}
+			else if (move == killers[ply][1]) {
+				list.scores[i] = KILLER;
+			}
+			else {
+				list.scores[i] = sideHistory[from][to];
+			}
+		}
+	}
+
+	// what the move wins in material, in centipawns: the captured piece's value plus whatever a promotion adds
+	public static int victimValue(Board b, int move) {
+		int ans = 0;
+		if (Moves.isCapture(move)) {
+			ans = PieceSquare.VALUES[Moves.captured(move)];
+		}
+		if (Moves.isPromotion(move)) {
+			ans += PieceSquare.VALUES[Moves.promotion(move)] - PieceSquare.VALUES[Piece.PAWN];
+		}
+		return ans;
+	}
+
+	// a move that caused a beta cutoff; index is its position in the order it was searched in
+	public void cutoff(Board b, int move, int depth, int ply, int index) {
+		cutoffs++;
+		if (index == 0) {
+			firstMoveCutoffs++;
+		}
+
+		if (Moves.isCapture(move) || Moves.isPromotion(move)) {
+			return;
+		}
+
+		if (killers[ply][0] != move) {
+			killers[ply][1] = killers[ply][0];
+			killers[ply][0] = move;
+		}
+
+		int[] h = history[b.turn.ordinal()][Moves.from(move)];
+		h[Moves.to(move)] += depth * depth;
+		if (h[Moves.to(move)] > HISTORY_LIMIT) {
+			age();
+		}
+	}
+
+	// halves the history so that newer results count for more
+	public void age() {
+		for (int[][] side : history) {
+			for (int[] from : side) {
+				for (int to = 0; to < 64; to++) {
+					from[to] /= 2;
+				}
+			}
+		}
+	}
+
+	public void newSearch() {
+		age();
+		for (int[] k : killers) {
+			k[0] = Moves.NONE;
+			k[1] = Moves.NONE;
+		}
+		cutoffs = 0;
+		firstMoveCutoffs = 0;
+	}
+
+	public String stats() {
+		return "cutoffs: " + cutoffs + ", " + (100 * firstMoveCutoffs / Math.max(1, cutoffs)) + "% on the first move";
+	}
+}
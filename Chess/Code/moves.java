@@ -0,0 +1,317 @@
+import javalib.worldimages.*;
+import tester.*;
+
+// moves packed into ints for the search: from, to, moved piece, captured piece + 1, promotion piece and flags
+// 0 is never a move, so it stands for "no move"
+class Moves {
+	static final int NONE = 0;
+
+	static final int CASTLE = 1 << 21;
+	static final int ENPASSANT = 1 << 22;
+	static final int DOUBLE_PUSH = 1 << 23;
+
+	// the piece letters of SAN, by type; pawns have none, so their place is taken by a character SAN never uses
+	static final String SAN_LETTERS = "_NBRQK";
+
+	public static int encode(int from, int to, int moved, int captured, int promotion, int flags) {
+		return from | to << 6 | moved << 12 | (captured + 1) << 15 | promotion << 18 | flags;
+	}
+
+	public static int from(int move) {
+		return move & 63;
+	}
+
+	public static int to(int move) {
+		return (move >>> 6) & 63;
+	}
+
+	public static int moved(int move) {
+		return (move >>> 12) & 7;
+	}
+
+	// the type of the captured piece, or -1 if nothing is captured
+	public static int captured(int move) {
+		return ((move >>> 15) & 7) - 1;
+	}
+
+	// the type promoted to, or 0 (a pawn, which is never promoted to) if this is not a promotion
+	public static int promotion(int move) {
+		return (move >>> 18) & 7;
+	}
+
+	public static boolean isCapture(int move) {
+		return captured(move) >= 0;
+	}
+
+	public static boolean isPromotion(int move) {
+		return promotion(move) != 0;
+	}
+
+	public static boolean isCastle(int move) {
+		return (move & CASTLE) != 0;
+	}
+
+	public static boolean isEnpassant(int move) {
+		return (move & ENPASSANT) != 0;
+	}
+
+	public static boolean isDoublePush(int move) {
+		return (move & DOUBLE_PUSH) != 0;
+	}
+
+	// from, to and promotion only, which is enough to identify a move within one position
+	public static boolean same(int a, int b) {
+		return (a & 0x1C0FFF) == (b & 0x1C0FFF);
+	}
+
+	public static int fromAction(Board b, Action a) {
+		int from = Bitboard.square(a.start);
+		int to = Bitboard.square(a.end);
+		Piece mover = b.squares[from];
+
+		int flags = 0;
+		int captured = -1;
+		if (a.isCastle()) {
+			return encode(from, b.castlingRook(Board.castlingRight(mover.color, ((Castle) a).isKingside())),
+					Piece.KING, -1, 0, CASTLE);
+		}
+		if (a.isEnpassant()) {
+			flags |= ENPASSANT;
+			captured = Piece.PAWN;
+		}
+		else if (b.squares[to] != null) {
+			captured = b.squares[to].type();
+		}
+		if (mover.isPawn() && Math.abs(from - to) == 16) {
+			flags |= DOUBLE_PUSH;
+		}
+
+		int promotion = 0;
+		if (a.promotion() != null) {
+			promotion = a.promotion().type();
+		}
+		return encode(from, to, mover.type(), captured, promotion, flags);
+	}
+
+	public static Action toAction(Board b, int move) {
+		Posn start = Bitboard.posn(from(move));
+		Posn end = Bitboard.posn(to(move));
+		Piece mover = b.squares[from(move)];
+
+		if (isCastle(move)) {
+			return new Castle(start, Bitboard.posn(kingTo(move)), (King) mover, to(move) > from(move));
+		}
+		if (isEnpassant(move)) {
+			return new Enpassant(start, end, (Pawn) mover);
+		}
+		if (isPromotion(move)) {
+			return new Promotion(start, end, (Pawn) mover, Piece.create(promotion(move), mover.color));
+		}
+		if (isCapture(move)) {
+			return new Capture(start, end, mover);
+		}
+		return new Move(start, end, mover);
+	}
+
+	// the legal move written as san (standard algebraic notation, e.g. "Nbd7", "exd8=Q+", "O-O") in b,
+	// or NONE if there is no such move
+	public static int fromSan(Board b, String san) {
+		san = san.replaceAll("[+#!?]", "");
+		if (san.isEmpty()) {
+			return NONE;
+		}
+
+		int type = SAN_LETTERS.indexOf(san.charAt(0));
+		boolean castle = san.startsWith("O-O") || san.startsWith("0-0");
+		boolean queenside = san.startsWith("O-O-O") || san.startsWith("0-0-0");
+
+		int promotion = 0;
+		int equals = san.indexOf('=');
+		if (equals >= 0 && equals + 1 < san.length()) {
+			promotion = SAN_LETTERS.indexOf(san.charAt(equals + 1));
+			san = san.substring(0, equals);
+		}
+
+		// whatever is between the piece letter and the destination narrows down which piece moves
+		String rest = type > 0 ? san.substring(1) : san;
+		rest = rest.replace("x", "");
+		if (!castle && rest.length() < 2) {
+			return NONE;
+		}
+		String destination = castle ? "" : rest.substring(rest.length() - 2);
+		String disambiguation = castle ? "" : rest.substring(0, rest.length() - 2);
+		if (type < 0) {
+			type = Piece.PAWN;
+		}
+
+		MoveList list = new MoveList();
+		MoveGenerator.generate(b, b.turn, list);
+		for (int i = 0; i < list.size(); i++) {
+			int move = list.get(i);
+			if (castle) {
+				if (!isCastle(move) || (to(move) < from(move)) != queenside) {
+					continue;
+				}
+			}
+			else {
+				String from = Action.stringify(Bitboard.posn(from(move)));
+				if (isCastle(move) || moved(move) != type || promotion(move) != Math.max(promotion, 0)
+						|| !Action.stringify(Bitboard.posn(to(move))).equals(destination)) {
+					continue;
+				}
+				boolean matches = true;
+				for (char c : disambiguation.toCharArray()) {
+					matches = matches && from.indexOf(c) >= 0;
+				}
+				if (!matches) {
+					continue;
+				}
+			}
+
+			if (MoveGenerator.legal(b, list, move)) {
+				return move;
+			}
+		}
+		return NONE;
+	}
+
+	// the move written as san in b, where it has not been played yet, with + or # if it checks or mates
+	public static String san(Board b, int move) {
+		String from = Action.stringify(Bitboard.posn(from(move)));
+		String to = Action.stringify(Bitboard.posn(to(move)));
+		String ans;
+		if (isCastle(move)) {
+			ans = to(move) > from(move) ? "O-O" : "O-O-O";
+		}
+		else if (moved(move) == Piece.PAWN) {
+			ans = (isCapture(move) ? from.charAt(0) + "x" : "") + to;
+			if (isPromotion(move)) {
+				ans += "=" + SAN_LETTERS.charAt(promotion(move));
+			}
+		}
+		else {
+			// another piece of the same kind that could go to the same square has to be told apart
+			boolean ambiguous = false;
+			boolean sameFile = false;
+			boolean sameRank = false;
+			MoveList list = new MoveList();
+			MoveGenerator.generate(b, b.turn, list);
+			for (int i = 0; i < list.size(); i++) {
+				int other = list.get(i);
+				if (moved(other) == moved(move) && to(other) == to(move) && from(other) != from(move)
+						&& MoveGenerator.legal(b, list, other)) {
+					ambiguous = true;
+					sameFile |= (from(other) & 7) == (from(move) & 7);
+					sameRank |= from(other) >>> 3 == from(move) >>> 3;
+				}
+			}
+
+			ans = "" + SAN_LETTERS.charAt(moved(move));
+			if (ambiguous) {
+				ans += !sameFile ? from.substring(0, 1) : !sameRank ? from.substring(1) : from;
+			}
+			ans += (isCapture(move) ? "x" : "") + to;
+		}
+
+		UndoInfo u = new UndoInfo();
+		b.make(move, u);
+		if (b.checkers != 0) {
+			ans += MoveGenerator.hasLegalMove(b) ? "+" : "#";
+		}
+		b.unmake(u);
+		return ans;
+	}
+
+	// the legal move written in long algebraic notation in b, or NONE if there is no such move
+	public static int fromUci(Board b, String text) {
+		MoveList list = new MoveList();
+		MoveGenerator.generate(b, b.turn, list);
+		for (int i = 0; i < list.size(); i++) {
+			int move = list.get(i);
+			if (uci(move).equals(text) && MoveGenerator.legal(b, list, move)) {
+				return move;
+			}
+		}
+		return NONE;
+	}
+
+	// where the king of a castle ends up, on the g or c file whichever square it starts from
+	public static int kingTo(int move) {
+		return (from(move) & ~7) | (to(move) > from(move) ? 6 : 2);
+	}
+
+	// long algebraic notation, as used by UCI, which writes a castle as the king's own move
+	public static String uci(int move) {
+		int to = isCastle(move) ? kingTo(move) : to(move);
+		String ans = Action.stringify(Bitboard.posn(from(move))) + Action.stringify(Bitboard.posn(to));
+		if (isPromotion(move)) {
+			ans += Piece.FEN_LETTERS.charAt(promotion(move));
+		}
+		return ans;
+	}
+}
+
+class ExamplesMoves {
+	void testFields(Tester t) {
+		int move = Moves.encode(12, 3, Piece.PAWN, Piece.ROOK, Piece.QUEEN, 0);
+		t.checkExpect(Moves.from(move), 12);
+		t.checkExpect(Moves.to(move), 3);
+		t.checkExpect(Moves.moved(move), Piece.PAWN);
+		t.checkExpect(Moves.captured(move), Piece.ROOK);
+		t.checkExpect(Moves.promotion(move), Piece.QUEEN);
+		t.checkExpect(Moves.isCapture(move) && Moves.isPromotion(move), true);
+		t.checkExpect(Moves.isCastle(move) || Moves.isEnpassant(move) || Moves.isDoublePush(move), false);
+
+		int push = Moves.encode(52, 36, Piece.PAWN, -1, 0, Moves.DOUBLE_PUSH);
+		t.checkExpect(Moves.captured(push), -1);
+		t.checkExpect(Moves.isCapture(push) || Moves.isPromotion(push), false);
+		t.checkExpect(Moves.isDoublePush(push), true);
+		t.checkExpect(push != Moves.NONE, true);
+		t.checkExpect(Moves.same(push, Moves.encode(52, 36, Piece.PAWN, -1, 0, 0)), true);
+		t.checkExpect(Moves.same(move, Moves.encode(12, 3, Piece.PAWN, Piece.ROOK, Piece.KNIGHT, 0)), false);
+	}
+
+	void testFlags(Tester t) {
+		Board b = Board.fromFen("r3k2r/8/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1");
+		t.checkExpect(Moves.isCastle(Moves.fromUci(b, "e1c1")), true);
+		t.checkExpect(Moves.isEnpassant(Moves.fromUci(b, "e5d6")), true);
+		t.checkExpect(Moves.captured(Moves.fromUci(b, "e5d6")), Piece.PAWN);
+		t.checkExpect(Moves.captured(Moves.fromUci(b, "a1a8")), Piece.ROOK);
+		t.checkExpect(Moves.fromUci(b, "e1e3"), Moves.NONE);
+	}
+
+	// the legal moves of b that do not come back from their own UCI or SAN
+	int unreadable(Board b) {
+		int ans = 0;
+		MoveList list = new MoveList();
+		MoveGenerator.generate(b, b.turn, list);
+		for (int i = 0; i < list.size(); i++) {
+			int move = list.get(i);
+			if (MoveGenerator.legal(b, list, move)
+					&& (Moves.fromUci(b, Moves.uci(move)) != move || Moves.fromSan(b, Moves.san(b, move)) != move)) {
+				ans++;
+			}
+		}
+		return ans;
+	}
+
+	void testNotation(Tester t) {
+		for (String[] position : Perft.REFERENCE) {
+			t.checkExpect(unreadable(Board.fromFen(position[1])), 0, position[0]);
+		}
+	}
+
+	// a list is reused by generating into it again
+	void testMoveList(Tester t) {
+		MoveList list = new MoveList();
+		Board b = new Board(Variant.STANDARD);
+		MoveGenerator.generate(b, b.turn, list);
+		t.checkExpect(list.size(), 20);
+		MoveGenerator.generate(b, b.turn, list);
+		t.checkExpect(list.size(), 20);
+		list.clear();
+		t.checkExpect(list.size(), 0);
+		list.add(Moves.fromUci(b, "e2e4"));
+		t.checkExpect(Moves.uci(list.get(0)), "e2e4");
+	}
+}
@@ -0,0 +1,284 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import tester.*;
+
+// a book in the Polyglot .bin format: 16 byte big-endian entries of key, move, weight and learn, sorted by key,
+// with Polyglot's own keys (see Polyglot), so any Polyglot book will do and the ones BookBuilder makes work elsewhere.
+// the file is mapped rather than read, so a lookup is a binary search straight over the mapped pages
+class OpeningBook {
+	static final int ENTRY_BYTES = 16;
+
+	final MappedByteBuffer entries;
+	final int size;
+
+	OpeningBook(String path) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		entries.order(ByteOrder.BIG_ENDIAN);
+		size = entries.capacity() / ENTRY_BYTES;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long key(int i) {
+		return entries.getLong(i * ENTRY_BYTES);
+	}
+
+	public int bookMove(int i) {
+		return entries.getShort(i * ENTRY_BYTES + 8) & 0xFFFF;
+	}
+
+	public int weight(int i) {
+		return entries.getShort(i * ENTRY_BYTES + 10) & 0xFFFF;
+	}
+
+	// the first entry whose key is not below key, in the unsigned order Polyglot sorts by
+	public int lowerBound(long key) {
+		int lo = 0;
+		int hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (Long.compareUnsigned(key(mid), key) < 0) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	// a move for b chosen at random in proportion to the weights, or Moves.NONE if b is not in the book
+	public int probe(Board b, Random random) {
+		long key = Polyglot.key(b);
+		int first = lowerBound(key);
+		int total = 0;
+		for (int i = first; i < size && key(i) == key; i++) {
+			total += weight(i);
+		}
+		if (total == 0) {
+			return Moves.NONE;
+		}
+
+		int pick = random.nextInt(total);
+		for (int i = first; i < size && key(i) == key; i++) {
+			pick -= weight(i);
+			if (pick < 0) {
+				return fromBookMove(b, bookMove(i));
+			}
+		}
+		return Moves.NONE;
+	}
+
+	// Polyglot numbers squares from a1 up, and writes castling as the king taking its own rook just as Moves does
+	public static int bookSquare(int sq) {
+		return (7 - (sq >>> 3)) * 8 + (sq & 7);
+	}
+
+	public static int toBookMove(int move) {
+		int from = Moves.from(move);
+		int to = Moves.to(move);
+		return bookSquare(to) | bookSquare(from) << 6 | Moves.promotion(move) << 12;
+	}
+
+	// the legal move in b that bookMove stands for, or Moves.NONE if there isn't one (a key collision)
+	public static int fromBookMove(Board b, int bookMove) {
+		MoveList list = new MoveList();
+		MoveGenerator.generate(b, b.turn, list);
+		for (int i = 0; i < list.size(); i++) {
+			int move = list.get(i);
+			if (toBookMove(move) == bookMove && MoveGenerator.legal(b, list, move)) {
+				return move;
+			}
+		}
+		return Moves.NONE;
+	}
+}
+
+// makes a book from PGN files: every position in the first plies of every game, with the moves played from it
+// weighted as Polyglot does, two for each win and one for each draw by the side that played them
+//   java BookBuilder book.bin 24 games1.pgn games2.pgn ...
+class BookBuilder {
+	static final int MAX_WEIGHT = 0xFFFF;
+
+	final int maxPly;
+	final Map<Long, Map<Integer, Integer>> weights = new HashMap<>();
+	int games;
+	int skipped;
+
+	BookBuilder(int maxPly) {
+		this.maxPly = maxPly;
+	}
+
+	public void addFile(String path) throws IOException {
+		String pgn = new String(Files.readAllBytes(Paths.get(path)));
+		// comments, variations and annotation glyphs carry no moves of the game itself
+		pgn = pgn.replaceAll("(?s)\\{.*?\\}", " ").replaceAll(";[^\\n]*", " ").replaceAll("\\$\\d+", " ");
+		// variations nest, so they are taken out from the innermost outwards
+		for (String next = pgn.replaceAll("\\([^()]*\\)", " "); !next.equals(pgn); next = pgn.replaceAll("\\([^()]*\\)", " ")) {
+			pgn = next;
+		}
+
+		Map<String, String> tags = new HashMap<>();
+		List<String> moves = new ArrayList<>();
+		for (String line : pgn.split("\\r?\\n")) {
+			line = line.trim();
+			if (line.startsWith("[")) {
+				if (!moves.isEmpty()) {
+					addGame(tags, moves);
+					tags = new HashMap<>();
+					moves = new ArrayList<>();
+				}
+				String[] tag = line.substring(1, line.length() - 1).split(" ", 2);
+				tags.put(tag[0], tag.length > 1 ? tag[1].replace("\"", "").trim() : "");
+				continue;
+			}
+
+			for (String token : line.split("\\s+")) {
+				token = token.replaceAll("^\\d+\\.+", "");
+				if (token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*")) {
+					tags.putIfAbsent("Result", token);
+					addGame(tags, moves);
+					tags = new HashMap<>();
+					moves = new ArrayList<>();
+				}
+				else if (!token.isEmpty()) {
+					moves.add(token);
+				}
+			}
+		}
+		if (!moves.isEmpty()) {
+			addGame(tags, moves);
+		}
+	}
+
+	public void addGame(Map<String, String> tags, List<String> moves) {
+		if (moves.isEmpty()) {
+			return;
+		}
+		String result = tags.getOrDefault("Result", "*");
+		if (tags.containsKey("FEN") || result.equals("*")) {
+			skipped++;
+			return;
+		}
+
+		Board b = new Board(Variant.STANDARD);
+		UndoInfo u = new UndoInfo();
+		for (int ply = 0; ply < Math.min(maxPly, moves.size()); ply++) {
+			int move = Moves.fromSan(b, moves.get(ply));
+			if (move == Moves.NONE) {
+				break;
+			}
+
+			int weight = result.equals("1/2-1/2") ? 1 : 0;
+			if (result.equals(b.turn.equals(Side.WHITE) ? "1-0" : "0-1")) {
+				weight = 2;
+			}
+			weights.computeIfAbsent(Polyglot.key(b), k -> new HashMap<>()).merge(OpeningBook.toBookMove(move), weight, Integer::sum);
+			b.make(move, u);
+		}
+		games++;
+	}
+
+	// entries sorted by unsigned key, best weighted first within a key; moves never won or drawn with are left out
+	public void write(String path) throws IOException {
+		List<Long> keys = new ArrayList<>(weights.keySet());
+		keys.sort(Long::compareUnsigned);
+
+		int entries = 0;
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+			for (long key : keys) {
+				List<Map.Entry<Integer, Integer>> moves = new ArrayList<>(weights.get(key).entrySet());
+				moves.sort((a, b) -> b.getValue() - a.getValue());
+				for (Map.Entry<Integer, Integer> e : moves) {
+					if (e.getValue() == 0) {
+						continue;
+					}
+					out.writeLong(key);
+					out.writeShort(e.getKey());
+					out.writeShort(Math.min(MAX_WEIGHT, e.getValue()));
+					out.writeInt(0);
+					entries++;
+				}
+			}
+		}
+		System.out.println(games + " games (" + skipped + " skipped), " + keys.size() + " positions, "
+				+ entries + " entries written to " + path);
+	}
+
+	public static void main(String[] args) throws IOException {
+		Piece.headless = true;
+		BookBuilder builder = new BookBuilder(Integer.parseInt(args[1]));
+		for (int i = 2; i < args.length; i++) {
+			builder.addFile(args[i]);
+		}
+		builder.write(args[0]);
+	}
+}
+
+class ExamplesOpeningBook {
+	// white won both games with 1.e4 and lost the one with 1.d4
+	static final String GAMES = "[Result \"1-0\"]\n1. e4 e5 2. Nf3 Nc6 1-0\n\n"
+			+ "[Result \"1-0\"]\n1. e4 e5 2. Nf3 Nf6 1-0\n\n"
+			+ "[Result \"0-1\"]\n1. d4 d5 0-1\n";
+
+	OpeningBook book() throws IOException {
+		File pgn = File.createTempFile("games", ".pgn");
+		File bin = File.createTempFile("book", ".bin");
+		pgn.deleteOnExit();
+		bin.deleteOnExit();
+		Files.write(pgn.toPath(), GAMES.getBytes());
+		BookBuilder builder = new BookBuilder(4);
+		builder.addFile(pgn.getPath());
+		builder.write(bin.getPath());
+		return new OpeningBook(bin.getPath());
+	}
+
+	Board after(String moves) {
+		Board b = new Board(Variant.STANDARD);
+		UndoInfo u = new UndoInfo();
+		for (String move : moves.split(" ")) {
+			if (!move.isEmpty()) {
+				b.make(Moves.fromUci(b, move), u);
+			}
+		}
+		return b;
+	}
+
+	String probe(OpeningBook book, String moves) {
+		int move = book.probe(after(moves), new Random(0));
+		return move == Moves.NONE ? "none" : Moves.uci(move);
+	}
+
+	void testProbe(Tester t) throws IOException {
+		OpeningBook book = book();
+		// only the winners' moves are kept, one entry each: e4 and Nf3 for white, d5 for black
+		t.checkExpect(book.size(), 3);
+		t.checkExpect(probe(book, ""), "e2e4");
+		t.checkExpect(probe(book, "d2d4"), "d7d5");
+		t.checkExpect(probe(book, "e2e4 e7e5"), "g1f3");
+		t.checkExpect(probe(book, "e2e4"), "none");
+		t.checkExpect(probe(book, "c2c4"), "none");
+	}
+
+	void testSortedByPolyglotKey(Tester t) throws IOException {
+		OpeningBook book = book();
+		t.checkExpect(book.key(book.lowerBound(0x463B96181691FC9CL)), 0x463B96181691FC9CL);
+		for (int i = 1; i < book.size(); i++) {
+			t.checkExpect(Long.compareUnsigned(book.key(i - 1), book.key(i)) <= 0, true);
+		}
+	}
+
+	void testCastlingAsKingTakesRook(Tester t) {
+		Board b = Board.fromFen("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+		int castle = Moves.fromUci(b, "e1g1");
+		t.checkExpect(OpeningBook.toBookMove(castle), 7 | 4 << 6);
+		t.checkExpect(OpeningBook.fromBookMove(b, 7 | 4 << 6), castle);
+	}
+}
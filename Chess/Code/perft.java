@@ -0,0 +1,167 @@
+import java.util.*;
+
+// counts the leaf nodes of the legal move tree to check the move generator against known totals
+// and to measure its speed; run it from the Pictures folder like the game, e.g.
+//   java Perft                        runs every reference position
+//   java Perft divide 3 <fen>         prints the count below each root move
+//   java Perft perft 5 <fen>          prints the total only
+// add -nobulk to make and unmake the last ply instead of counting the legal moves there
+class Perft {
+	static final int MAX_DEPTH = 16;
+
+	// name, fen, then the expected node counts from depth 1 upwards
+	static final String[][] REFERENCE = {
+			{"start", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+					"20", "400", "8902", "197281", "4865609"},
+			{"kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+					"48", "2039", "97862", "4085603"},
+			{"position 3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+					"14", "191", "2812", "43238", "674624"},
+			{"position 4", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+					"6", "264", "9467", "422333"},
+			{"position 4 mirrored", "r2q1rk1/pP1p2pp/Q4n2/bbp1p3/Np6/1B3NBn/pPPP1PPP/R3K2R b KQ - 0 1",
+					"6", "264", "9467", "422333"},
+			{"position 5", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+					"44", "1486", "62379", "2103487"},
+			{"position 6", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+					"46", "2079", "89890", "3894594"},
+			// Chess960, castling rights in Shredder-FEN
+			{"960 position 1", "bqnb1rkr/pp3ppp/3ppn2/2p5/5P2/P2P4/NPP1P1PP/BQ1BNRKR w HFhf - 2 9",
+					"21", "528", "12189", "326672"},
+			{"960 position 2", "2nnrbkr/p1qppppp/8/1ppb4/6PP/3PP3/PPP2P2/BQNNRBKR w HEhe - 1 9",
+					"21", "807", "18002", "667366"},
+			{"960 position 3", "b1q1rrkb/pppppppp/3nn3/8/P7/1PPP4/4PPPP/BQNNRKRB w GE - 1 9",
+					"20", "479", "10471", "273318"},
+			{"960 position 4", "1nbbnrkr/p1p1ppp1/3p4/1p3P1p/3Pq2P/8/PPP1P1P1/QNBBNRKR w HFhf - 0 9",
+					"28", "1120", "31058", "1171749"},
+	};
+
+	final MoveList[] moveLists = new MoveList[MAX_DEPTH + 1];
+	final UndoInfo[] undos = new UndoInfo[MAX_DEPTH + 1];
+	final boolean bulk;
+
+	long nodes;
+
+	Perft(boolean bulk) {
+		this.bulk = bulk;
+		for (int i = 0; i <= MAX_DEPTH; i++) {
+			moveLists[i] = new MoveList();
+			undos[i] = new UndoInfo();
+		}
+	}
+
+	public long perft(Board b, int depth) {
+		if (depth == 0) {
+			nodes++;
+			return 1;
+		}
+
+		MoveList list = moveLists[depth];
+		MoveGenerator.generate(b, b.turn, list);
+
+		long ans = 0;
+		for (int i = 0; i < list.size(); i++) {
+			int move = list.get(i);
+			if (!MoveGenerator.legal(b, list, move)) {
+				continue;
+			}
+
+			if (bulk && depth == 1) {
+				nodes++;
+				ans++;
+				continue;
+			}
+
+			b.make(move, undos[depth]);
+			ans += perft(b, depth - 1);
+			b.unmake(undos[depth]);
+		}
+		return ans;
+	}
+
+	public Map<String, Long> divide(Board b, int depth) {
+		Map<String, Long> ans = new TreeMap<>();
+
+		MoveList list = new MoveList();
+		MoveGenerator.generate(b, b.turn, list);
+		UndoInfo u = new UndoInfo();
+		for (int i = 0; i < list.size(); i++) {
+			int move = list.get(i);
+			if (!MoveGenerator.legal(b, list, move)) {
+				continue;
+			}
+
+			b.make(move, u);
+			ans.put(Moves.uci(move), perft(b, depth - 1));
+			b.unmake(u);
+		}
+		return ans;
+	}
+
+	// runs every reference position to its deepest known count, returning whether all of them matched
+	public boolean runReference() {
+		boolean ans = true;
+		long totalNodes = 0;
+		long totalTime = 0;
+
+		for (String[] ref : REFERENCE) {
+			Board b = Board.fromFen(ref[1]);
+			for (int depth = 1; depth <= ref.length - 2; depth++) {
+				long expected = Long.parseLong(ref[depth + 1]);
+
+				nodes = 0;
+				long start = System.nanoTime();
+				long count = perft(b, depth);
+				long time = System.nanoTime() - start;
+
+				totalNodes += nodes;
+				totalTime += time;
+
+				String result = count == expected ? "ok" : "FAILED, expected " + expected;
+				System.out.println(ref[0] + " depth " + depth + ": " + count + " " + result
+						+ " (" + nodesPerSecond(nodes, time) + " nps)");
+				ans = ans && count == expected;
+			}
+		}
+
+		System.out.println("total: " + totalNodes + " nodes, " + nodesPerSecond(totalNodes, totalTime) + " nps"
+				+ (bulk ? " (bulk counting)" : ""));
+		return ans;
+	}
+
+	public static long nodesPerSecond(long nodes, long nanos) {
+		return nodes * 1000000000L / Math.max(1, nanos);
+	}
+
+	public static void main(String[] args) {
+		Piece.headless = true;
+		List<String> rest = new ArrayList<>(Arrays.asList(args));
+		boolean bulk = !rest.remove("-nobulk");
+		Perft p = new Perft(bulk);
+
+		if (rest.isEmpty()) {
+			if (!p.runReference()) {
+				System.exit(1);
+			}
+			return;
+		}
+
+		int depth = Integer.parseInt(rest.get(1));
+		Board b = Board.fromFen(String.join(" ", rest.subList(2, rest.size())));
+		long start = System.nanoTime();
+
+		if (rest.get(0).equals("divide")) {
+			long total = 0;
+			for (Map.Entry<String, Long> e : p.divide(b, depth).entrySet()) {
+				System.out.println(e.getKey() + ": " + e.getValue());
+				total += e.getValue();
+			}
+			System.out.println("total: " + total);
+		}
+		else {
+			System.out.println("total: " + p.perft(b, depth));
+		}
+
+		System.out.println(nodesPerSecond(p.nodes, System.nanoTime() - start) + " nps");
+	}
+}
@@ -31,9 +31,39 @@ enum Side {
 abstract class Piece {
 	static final int SIZE = 70;
 	
+	static final int PAWN = 0;
+	static final int KNIGHT = 1;
+	static final int BISHOP = 2;
+	static final int ROOK = 3;
+	static final int QUEEN = 4;
+	static final int KING = 5;
+	
+	static final String FEN_LETTERS = "pnbrqk";
+	
+	// the tools that never draw run headless, so no image class is so much as loaded; also -Dchess.headless=true
+	static volatile boolean headless = Boolean.getBoolean("chess.headless");
+	
+	public static Piece create(int type, Side color) {
+		switch (type) {
+			case PAWN:
+				return new Pawn(color);
+			case KNIGHT:
+				return new Knight(color);
+			case BISHOP:
+				return new Bishop(color);
+			case ROOK:
+				return new Rook(color);
+			case QUEEN:
+				return new Queen(color);
+			case KING:
+				return new King(color);
+			default:
+				throw new IllegalArgumentException(type + " not a piece type");
+		}
+	}
+	
 	final Side color;
 	boolean moved;
-	WorldImage pieceImage;
 	
 	Piece(Side color) {
 		this.color = color;
@@ -48,37 +78,13 @@ abstract class Piece {
 	}
 	
 	public Set<Action> generateActions(Board b, Posn pos) {
-		Set<Action> ans = generateEnpassants(b, pos);
-		ans.addAll(generateCastles(b, pos));
-		ans.addAll(generatePromotions(b, pos));
-		ans.addAll(generateCaptures(b, pos));
-		ans.addAll(generateMoves(b, pos));
-		
-		return ans.stream()
-				.filter(a -> !a.apply(b).inCheck(color))
+		return b.allActions(color).stream()
+				.filter(a -> a.start.equals(pos))
 				.collect(Collectors.toSet());
-		
 	}
 	
-	public boolean attacks(Board b, Posn target, Posn start) { // override for pawn
-		Set<Action> acts = generateMoves(b, start);
-		acts.addAll(generateCaptures(b, start));
-		
-		return acts.stream().anyMatch(a -> a.end.equals(target));
-	}
-	
-	abstract Set<Action> generateMoves(Board b, Posn pos);
-	abstract Set<Action> generateCaptures(Board b, Posn pos);
-	
-	public Set<Action> generateEnpassants(Board b, Posn pos) { return new HashSet<>(); }
-	
-	public Set<Action> generatePromotions(Board b, Posn pos) {
-		return new HashSet<>();
-	}
-	
-	public Set<Action> generateCastles(Board b, Posn pos) {
-		return new HashSet<>();
-	}
+	// the squares this piece would attack from sq with the given squares occupied, from Bitboard's tables
+	abstract long attacks(int sq, long occupied);
 	
 	public Board makeMove(Board b, Posn start, Posn end) {
 		Set<Action> acts = generateActions(b, start);
@@ -124,6 +130,24 @@ abstract class Piece {
 	}
 
 	abstract Piece copy();
+	
+	abstract int type();
+	
+	// the picture is shared with every piece of this kind and colour, see PieceImages
+	public WorldImage image() {
+		if (headless) {
+			throw new IllegalStateException("no piece images when running headless");
+		}
+		return PieceImages.get(type(), color);
+	}
+	
+	public char fenLetter() {
+		char c = FEN_LETTERS.charAt(type());
+		if (isColor(Side.WHITE)) {
+			return Character.toUpperCase(c);
+		}
+		return c;
+	}
 
 	public boolean isKing() {
 		return false;
@@ -131,8 +155,6 @@ abstract class Piece {
 
 	public void unpassant() {}
 
-	abstract int numericValue();
-
 	public boolean isEnpassantable() {
 		return false;
 	}
@@ -0,0 +1,31 @@
+import javalib.worldimages.*;
+
+// the piece pictures, read and scaled to a square once and then shared by every piece of a kind and colour,
+// so pieces themselves hold no images and copying a board for the search makes none
+class PieceImages {
+	static final String[] NAMES = {"Pawn", "Knight", "Bishop", "Rook", "Queen", "King"};
+
+	// by side, then piece type; all twelve are read the first time any is asked for
+	static volatile WorldImage[][] images;
+
+	public static WorldImage get(int type, Side s) {
+		if (images == null) {
+			load();
+		}
+		return images[s.ordinal()][type];
+	}
+
+	public static synchronized void load() {
+		if (images != null) {
+			return;
+		}
+		WorldImage[][] ans = new WorldImage[2][NAMES.length];
+		for (Side s : Side.values()) {
+			for (int type = 0; type < NAMES.length; type++) {
+				WorldImage file = new FromFileImage(s.toString().toLowerCase() + NAMES[type] + ".png");
+				ans[s.ordinal()][type] = new ScaleImageXY(file, (1.0*Piece.SIZE)/file.getWidth(), (1.0*Piece.SIZE)/file.getHeight());
+			}
+		}
+		images = ans;
+	}
+}
@@ -0,0 +1,78 @@
+// piece values and piece-square tables in centipawns, the board keeps their sum up to date as pieces come and go
+class PieceSquare {
+	static final int[] VALUES = {100, 320, 330, 500, 900, 0};
+
+	// from white's point of view, a8 first, the same way round as the squares; black reads them mirrored
+	static final int[][] TABLES = {
+			{ // pawn
+					0, 0, 0, 0, 0, 0, 0, 0,
+					50, 50, 50, 50, 50, 50, 50, 50,
+					10, 10, 20, 30, 30, 20, 10, 10,
+					5, 5, 10, 25, 25, 10, 5, 5,
+					0, 0, 0, 20, 20, 0, 0, 0,
+					5, -5, -10, 0, 0, -10, -5, 5,
+					5, 10, 10, -20, -20, 10, 10, 5,
+					0, 0, 0, 0, 0, 0, 0, 0},
+			{ // knight
+					-50, -40, -30, -30, -30, -30, -40, -50,
+					-40, -20, 0, 0, 0, 0, -20, -40,
+					-30, 0, 10, 15, 15, 10, 0, -30,
+					-30, 5, 15, 20, 20, 15, 5, -30,
+					-30, 0, 15, 20, 20, 15, 0, -30,
+					-30, 5, 10, 15, 15, 10, 5, -30,
+					-40, -20, 0, 5, 5, 0, -20, -40,
+					-50, -40, -30, -30, -30, -30, -40, -50},
+			{ // bishop
+					-20, -10, -10, -10, -10, -10, -10, -20,
+					-10, 0, 0, 0, 0, 0, 0, -10,
+					-10, 0, 5, 10, 10, 5, 0, -10,
+					-10, 5, 5, 10, 10, 5, 5, -10,
+					-10, 0, 10, 10, 10, 10, 0, -10,
+					-10, 10, 10, 10, 10, 10, 10, -10,
+					-10, 5, 0, 0, 0, 0, 5, -10,
+					-20, -10, -10, -10, -10, -10, -10, -20},
+			{ // rook
+					0, 0, 0, 0, 0, 0, 0, 0,
+					5, 10, 10, 10, 10, 10, 10, 5,
+					-5, 0, 0, 0, 0, 0, 0, -5,
+					-5, 0, 0, 0, 0, 0, 0, -5,
+					-5, 0, 0, 0, 0, 0, 0, -5,
+					-5, 0, 0, 0, 0, 0, 0, -5,
+					-5, 0, 0, 0, 0, 0, 0, -5,
+					0, 0, 0, 5, 5, 0, 0, 0},
+			{ // queen
+					-20, -10, -10, -5, -5, -10, -10, -20,
+					-10, 0, 0, 0, 0, 0, 0, -10,
+					-10, 0, 5, 5, 5, 5, 0, -10,
+					-5, 0, 5, 5, 5, 5, 0, -5,
+					0, 0, 5, 5, 5, 5, 0, -5,
+					-10, 5, 5, 5, 5, 5, 0, -10,
+					-10, 0, 5, 0, 0, 0, 0, -10,
+					-20, -10, -10, -5, -5, -10, -10, -20},
+			{ // king, sheltered behind its pawns
+					-30, -40, -40, -50, -50, -40, -40, -30,
+					-30, -40, -40, -50, -50, -40, -40, -30,
+					-30, -40, -40, -50, -50, -40, -40, -30,
+					-30, -40, -40, -50, -50, -40, -40, -30,
+					-20, -30, -30, -40, -40, -30, -30, -20,
+					-10, -20, -20, -20, -20, -20, -20, -10,
+					20, 20, 0, 0, 0, 0, 20, 20,
+					20, 30, 10, 0, 0, 10, 30, 20},
+	};
+
+	// value plus table entry, signed so that white's pieces count up and black's down
+	static final int[][][] SCORES = new int[2][6][64];
+
+	static {
+		for (int type = 0; type < 6; type++) {
+			for (int sq = 0; sq < 64; sq++) {
+				SCORES[Side.WHITE.ordinal()][type][sq] = VALUES[type] + TABLES[type][sq];
+				SCORES[Side.BLACK.ordinal()][type][sq] = -(VALUES[type] + TABLES[type][sq ^ 56]);
+			}
+		}
+	}
+
+	public static int score(Piece pi, int sq) {
+		return SCORES[pi.color.ordinal()][pi.type()][sq];
+	}
+}
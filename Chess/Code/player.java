@@ -1,4 +1,5 @@
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.*;
 
 abstract class Player implements Function<Board, Board> {
@@ -15,7 +16,48 @@ abstract class Player implements Function<Board, Board> {
 		activePlayer = !activePlayer;
 	}
 	
+	// tells the player how much time its side has left before it moves, in seconds
+	public void setClock(double timeLeft, double increment) {}
+	
 	public abstract Board apply(Board b);
+	
+	// the move apply would play on b, found by matching the board it returns against every legal move
+	public int move(Board b) {
+		Board after = apply(b);
+		Board copy = new Board(b);
+		MoveList list = new MoveList();
+		UndoInfo u = new UndoInfo();
+		MoveGenerator.generate(copy, copy.turn, list);
+		for (int i = 0; i < list.size(); i++) {
+			int move = list.get(i);
+			if (MoveGenerator.legal(copy, list, move)) {
+				copy.make(move, u);
+				boolean same = copy.key == after.key;
+				copy.unmake(u);
+				if (same) {
+					return move;
+				}
+			}
+		}
+		return Moves.NONE;
+	}
+	
+	// the move as an action, worked out on the executor from a copy of b, or null if there is none
+	public CompletableFuture<Action> think(Board b, Executor executor) {
+		Board copy = new Board(b);
+		return CompletableFuture.supplyAsync(() -> {
+			int move = move(copy);
+			return move == Moves.NONE ? null : Moves.toAction(copy, move);
+		}, executor);
+	}
+	
+	// asks a think in progress to answer as soon as it can; its answer is thrown away
+	public void stopThinking() {}
+	
+	// thinks ahead on the opponent's time about b, the position after this player's own move
+	public void ponder(Board b, Executor executor) {}
+	
+	public void stopPondering() {}
 }
 
 class Human extends Player {
@@ -38,6 +80,8 @@ abstract class AI extends Player {
 }
 
 class RanDumbAI extends AI {
+	final Random random = new Random();
+	
 	RanDumbAI(Side color) {
 		super(color);
 	}
@@ -45,102 +89,349 @@ class RanDumbAI extends AI {
 	public Board apply(Board b) {
 		return b.makeRandomMove(color);
 	}
+	
+	public int move(Board b) {
+		MoveList list = new MoveList();
+		MoveGenerator.generate(b, b.turn, list);
+		int[] legal = new int[list.size()];
+		int count = 0;
+		for (int i = 0; i < list.size(); i++) {
+			if (MoveGenerator.legal(b, list, list.get(i))) {
+				legal[count++] = list.get(i);
+			}
+		}
+		return count == 0 ? Moves.NONE : legal[random.nextInt(count)];
+	}
 }
 
-class SmartAI extends AI {
-	static final int DEPTH = 4;
+class SmartAI extends AI implements AutoCloseable {
+	static final int DEPTH = 4; // the depth searched to when no clock has been set
+	static final int NODES_BETWEEN_TIME_CHECKS = 1024;
+	static final int DELTA_MARGIN = 200; // centipawns a capture may fall short of alpha by and still be searched
+	static final int ASPIRATION_WINDOW = 25; // centipawns either side of the last iteration's score
+	static final int NULL_MOVE_REDUCTION = 2;
+	static final int NULL_MOVE_MIN_DEPTH = 3;
+	static final int LMR_MOVES = 3; // moves searched in full before the quiet ones are reduced
+	static final int LMR_MIN_DEPTH = 3;
+	static final int HASH_MEGABYTES = 16;
+	static final int MAX_PLY = 64;
 	
-	Map<Board, Integer> alreadyComputedValues = new HashMap<>();
+	// being mated n plies from the root scores -MATE + n, so shorter mates are preferred and longer defences;
+	// a tablebase can see mates far beyond the search's own plies, hence the wider band
+	static final int MATE = 1000000;
+	static final int INFINITY = MATE + 1;
+	static final int MATE_BOUND = MATE - MAX_PLY - 2 * Tablebase.MAX_DTM;
 	
-	public int alphaBeta(Board b) {
-		int ans = alphaBeta(b, DEPTH, Integer.MIN_VALUE, Integer.MAX_VALUE, color.opponent());
-		System.out.println(ans);
-		return ans;
+	public static boolean isMate(int score) {
+		return Math.abs(score) >= MATE_BOUND;
 	}
 	
-	public int alphaBeta(Board b, int depth, int alpha, int beta, Side s) {
-		if (alreadyComputedValues.containsKey(b)) {
-			return alreadyComputedValues.get(b);
+	final TranspositionTable table;
+	Evaluator evaluator = new TaperedEvaluator();
+	OpeningBook book;
+	Tablebases tablebases;
+	final Random random = new Random();
+	SearchWorker[] workers;
+	ForkJoinPool pool;
+	
+	double timeLeft = -1;
+	double increment = 0;
+	double moveTime = -1; // seconds for every move regardless of the clock, or -1
+	int depth = -1; // the deepest any search goes, or -1 for DEPTH without a clock and no limit on one
+	
+	// the selective search, each switchable on its own to measure what it is worth
+	boolean nullMove = true;
+	boolean lateMoveReductions = true;
+	boolean checkExtensions = true;
+	
+	boolean verbose = false; // prints every iteration of the search and each move with its stats
+	SearchListener listener;
+	
+	// the limits of the search in progress, which a ponder hit changes while it runs
+	volatile TimeManager time = TimeManager.unlimited();
+	volatile int maxDepth = DEPTH;
+	volatile boolean stopped;
+	int completedDepth;
+	
+	// pondering: while the opponent thinks, the position after the reply this AI expects is searched in the
+	// background; if the reply comes, that search simply goes on as the real one, on the real clock
+	boolean pondering = true;
+	int expectedReply = Moves.NONE;
+	Board ponderBoard;
+	CompletableFuture<Integer> ponder;
+	
+	SmartAI(Side color, int hashMegabytes, int threads) {
+		super(color);
+		table = new TranspositionTable(hashMegabytes);
+		setThreads(threads);
+	}
+	
+	SmartAI(Side color, int hashMegabytes) {
+		this(color, hashMegabytes, 1);
+	}
+	
+	SmartAI(Side color) {
+		this(color, HASH_MEGABYTES);
+	}
+	
+	// lazy SMP: every thread searches the whole tree from the root on its own, and they help each other
+	// only through the shared transposition table; one thread searches on the caller's thread alone,
+	// so a search to a fixed depth always plays out the same way
+	public void setThreads(int threads) {
+		threads = Math.max(1, threads);
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+		if (threads > 1) {
+			pool = new ForkJoinPool(threads - 1);
 		}
 		
-		if (depth <= 0 || b.endOfGame()) {
-			int ans = b.heuristicValue();
-			alreadyComputedValues.put(b, b.heuristicValue());
+		workers = new SearchWorker[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new SearchWorker(this, i);
+		}
+	}
+	
+	public int threads() {
+		return workers.length;
+	}
+	
+	// ends any pondering and lets the helpers' threads go; the AI is done with after this
+	public void close() {
+		stopPondering();
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+	
+	// the depth searched to, which a clock or move time can only cut short
+	public void setDepth(int depth) {
+		this.depth = Math.max(1, Math.min(depth, MAX_PLY - 1));
+	}
+	
+	// the book is played from for as long as it knows the position, before any searching
+	public void setBook(OpeningBook book) {
+		this.book = book;
+	}
+	
+	// positions with few enough pieces are scored straight from the tables instead of being searched
+	public void setTablebases(Tablebases tablebases) {
+		this.tablebases = tablebases;
+	}
+	
+	// swapping in a MaterialEvaluator gives the plain material and piece-square count to compare against
+	public void setEvaluator(Evaluator evaluator) {
+		this.evaluator = evaluator;
+	}
+	
+	// the evaluator scores from white's point of view, this is from the side to move's;
+	// whether the game is over is left to the search, which finds out anyway when it generates the moves
+	public int evaluate(Board b) {
+		int ans = evaluator.evaluate(b);
+		if (b.turn.equals(Side.WHITE)) {
 			return ans;
 		}
-
-		Set<Action> acts = b.allActions(s);
-
-		int ans;
-		if (s.equals(Side.WHITE)) {
-			ans = Integer.MIN_VALUE;
-			
-			for (Action a : acts) {
-				ans = Math.max(ans, alphaBeta(a.apply(b), depth-1, alpha, beta, s.opponent()));
-
-				if (ans >= beta) {
-					break;
-				}
-				alpha = Math.max(alpha, ans);
-			}
-
+		return -ans;
+	}
+	
+	public void setClock(double timeLeft, double increment) {
+		this.timeLeft = timeLeft;
+		this.increment = increment;
+	}
+	
+	public void setMoveTime(double seconds) {
+		this.moveTime = seconds;
+	}
+	
+	public long totalNodes() {
+		long ans = 0;
+		for (SearchWorker w : workers) {
+			ans += w.nodes;
+		}
+		return ans;
+	}
+	
+	public int bestMove(Board b) {
+		stopped = false;
+		return search(b);
+	}
+	
+	// stops a search running on another thread, which then returns the best move it has so far
+	public void stop() {
+		stopped = true;
+	}
+	
+	public int search(Board b) {
+		limit();
+		return run(b);
+	}
+	
+	// the depth and time the settings allow a search starting now
+	public void limit() {
+		if (timeLeft >= 0) {
+			maxDepth = depth > 0 ? depth : MAX_PLY - 1;
+			time = new TimeManager(timeLeft, increment);
+		}
+		else if (moveTime >= 0) {
+			maxDepth = depth > 0 ? depth : MAX_PLY - 1;
+			time = TimeManager.fixedTime(moveTime);
 		}
 		else {
-			ans = Integer.MAX_VALUE;
-			
-			for (Action a : acts) {
-				ans = Math.min(ans, alphaBeta(a.apply(b), depth-1, alpha, beta, s.opponent()));
-				
-				if (ans <= alpha) {
-					break;
-				}
-				beta = Math.min(beta, ans);
+			maxDepth = depth > 0 ? depth : DEPTH;
+			time = TimeManager.unlimited();
+		}
+	}
+	
+	// the helpers run on the pool until the main thread's iterative deepening ends, which stops them,
+	// and the answer is always the main thread's best move; stopped before it starts, it plays the first legal move
+	public int run(Board b) {
+		table.newSearch();
+		completedDepth = 0;
+		
+		Board root = new Board(b);
+		MoveList list = new MoveList();
+		MoveGenerator.generate(root, root.turn, list);
+		int[] rootMoves = new int[list.size()];
+		int count = 0;
+		for (int i = 0; i < list.size(); i++) {
+			if (MoveGenerator.legal(root, list, list.get(i))) {
+				rootMoves[count++] = list.get(i);
 			}
-
 		}
-		alreadyComputedValues.put(b, ans);
-		return ans;
+		if (count == 0) {
+			return Moves.NONE;
+		}
+		
+		for (SearchWorker w : workers) {
+			w.prepare(root, rootMoves, count);
+		}
+		
+		List<ForkJoinTask<?>> helpers = new ArrayList<>();
+		for (int i = 1; i < workers.length; i++) {
+			SearchWorker w = workers[i];
+			helpers.add(pool.submit(w::iterate));
+		}
+		
+		workers[0].iterate();
+		stopped = true;
+		for (ForkJoinTask<?> helper : helpers) {
+			helper.join();
+		}
+		
+		completedDepth = workers[0].completedDepth;
+		int[] line = workers[0].principalLine(2);
+		expectedReply = line.length > 1 ? line[1] : Moves.NONE;
+		return workers[0].best;
 	}
 	
-	SmartAI(Side color) {
-		super(color);
+	// starts searching the position after the expected reply to the move just played on b, with no limit
+	public void ponder(Board b, Executor executor) {
+		if (!pondering || ponder != null || expectedReply == Moves.NONE || !MoveGenerator.isLegal(b, expectedReply)) {
+			return;
+		}
+		Board expected = new Board(b);
+		expected.make(expectedReply, new UndoInfo());
+		
+		ponderBoard = expected;
+		stopped = false;
+		maxDepth = MAX_PLY - 1;
+		time = TimeManager.unlimited();
+		ponder = CompletableFuture.supplyAsync(() -> run(expected), executor);
+	}
+	
+	// a ponder miss: the search is stopped and waited for, and all it leaves behind is what it put in the table
+	public void stopPondering() {
+		if (ponder != null) {
+			stop();
+			ponder.join();
+			ponder = null;
+			ponderBoard = null;
+		}
+	}
+	
+	public String stats() {
+		String ans = "";
+		long elapsed = Math.max(1, workers[0].elapsed);
+		for (SearchWorker w : workers) {
+			ans += w.stats() + "\n";
+		}
+		return ans + "total: " + totalNodes() + " nodes, " + Perft.nodesPerSecond(totalNodes(), elapsed) + " nps on "
+				+ workers.length + (workers.length == 1 ? " thread" : " threads");
 	}
 
-	public Board apply(Board b) {
-		List<Action> acts = new ArrayList<>(b.allActions(color));
-		
-		Action bestMove = acts.get(0);
-		bestMove.print(b);
-		int bestVal = alphaBeta(bestMove.apply(b));
+	// everything known about the last search: the threads' stats, then the table's and the move ordering's
+	public String report() {
+		return stats() + "\n" + table.stats() + "\n" + workers[0].ordering.stats();
+	}
+
+	// the same move apply plays, as a move rather than a board
+	public int move(Board b) {
+		stopped = false;
+		return choose(b);
+	}
+	
+	// the stop flag is cleared before the search is handed to the executor, so stopThinking counts from the start;
+	// on a ponder hit the running search is put on the clock and its answer awaited instead
+	public CompletableFuture<Action> think(Board b, Executor executor) {
+		if (ponder != null && b.key == ponderBoard.key) {
+			Board root = ponderBoard;
+			CompletableFuture<Integer> hit = ponder;
+			ponder = null;
+			ponderBoard = null;
+			limit();
+			return hit.thenApply(move -> move == Moves.NONE ? null : Moves.toAction(root, move));
+		}
+		stopPondering();
 		
-		if (color.equals(Side.WHITE)) {
-			for (int i = 1; i < acts.size(); i++) {
-				Action a = acts.get(i);
-				a.print(b);
-				
-				int val = alphaBeta(a.apply(b));
-				if (bestVal < val) {
-					bestMove = a;
-					bestVal = val;
-				}
+		stopped = false;
+		Board copy = new Board(b);
+		return CompletableFuture.supplyAsync(() -> {
+			int move = choose(copy);
+			return move == Moves.NONE ? null : Moves.toAction(copy, move);
+		}, executor);
+	}
+	
+	public void stopThinking() {
+		stop();
+		stopPondering();
+	}
+	
+	// a book move if there is one, otherwise a search that leaves the stop flag as it is
+	public int choose(Board b) {
+		if (book != null) {
+			int move = book.probe(b, random);
+			if (move != Moves.NONE) {
+				return move;
 			}
 		}
-		else {
+		return search(b);
+	}
 
-			for (int i = 1; i < acts.size(); i++) {
-				Action a = acts.get(i);
-				a.print(b);
+	public Board apply(Board b) {
+		if (book != null) {
+			int move = book.probe(b, random);
+			if (move != Moves.NONE) {
+				Action bookMove = Moves.toAction(b, move);
+				Board ans = bookMove.apply(b);
 				
-				int val = alphaBeta(a.apply(b));
-				if (bestVal > val) {
-					bestMove = a;
-					bestVal = val;
+				if (verbose) {
+					System.out.print("the book move is: ");
+					bookMove.print(ans);
 				}
+				return ans;
 			}
 		}
-			
-		System.out.print("the best move is: ");
-		bestMove.print(b);
-		return bestMove.apply(b);
+		
+		Action bestMove = Moves.toAction(b, bestMove(b));
+		Board ans = bestMove.apply(b);
+		
+		if (verbose) {
+			System.out.print("the best move is: ");
+			bestMove.print(ans);
+			System.out.println(report());
+		}
+		return ans;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,45 @@
+// measures how much the parallel search gains: searches the perft reference positions to a fixed depth
+// on one thread and then on more, and compares the time each took; run it from the Pictures folder, e.g.
+//   java SearchBenchmark              depth 5 on one thread against every core
+//   java SearchBenchmark 6 4          depth 6 on one thread against four
+class SearchBenchmark {
+	public static void main(String[] args) {
+		Piece.headless = true;
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+		// the first searches also pay for compiling the search, so they are run once before timing anything
+		run(Math.min(depth, 3), 1);
+		long[] serial = run(depth, 1);
+		long[] parallel = run(depth, threads);
+
+		System.out.println("1 thread: " + serial[0] / 1000000 + "ms, " + Perft.nodesPerSecond(serial[1], serial[0]) + " nps");
+		System.out.println(threads + " threads: " + parallel[0] / 1000000 + "ms, "
+				+ Perft.nodesPerSecond(parallel[1], parallel[0]) + " nps, "
+				+ Perft.nodesPerSecond(parallel[1], parallel[0]) / threads + " nps per thread");
+		System.out.println("time to depth speedup: " + String.format("%.2f", (double) serial[0] / parallel[0]));
+	}
+
+	// the total time and nodes the reference positions took to search to depth, on a fresh table each
+	public static long[] run(int depth, int threads) {
+		long time = 0;
+		long nodes = 0;
+		for (String[] ref : Perft.REFERENCE) {
+			Board b = Board.fromFen(ref[1]);
+			SmartAI ai = new SmartAI(b.turn, SmartAI.HASH_MEGABYTES, threads);
+			ai.setDepth(depth);
+
+			long start = System.nanoTime();
+			int best = ai.bestMove(b);
+			long elapsed = System.nanoTime() - start;
+
+			System.out.println(ref[0] + " on " + threads + (threads == 1 ? " thread: " : " threads: ")
+					+ Moves.uci(best) + " in " + elapsed / 1000000 + "ms");
+			System.out.println(ai.stats());
+			time += elapsed;
+			nodes += ai.totalNodes();
+			ai.close();
+		}
+		return new long[] {time, nodes};
+	}
+}
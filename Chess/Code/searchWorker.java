@@ -0,0 +1,503 @@
+import java.util.*;
+import tester.*;
+
+// one thread's share of a SmartAI search: its own copy of the board, move lists, killers and history,
+// with only the transposition table, the clock and the stop flag shared with the other threads
+class SearchWorker {
+	// helper n leaves out depths in runs of SKIP_SIZE[n - 1], shifted by SKIP_PHASE[n - 1], so the helpers spread
+	// over different depths at any moment instead of all searching the one the main thread is on
+	static final int[] SKIP_SIZE = {1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 3, 3, 4, 4, 4, 4, 4, 4, 4, 4};
+	static final int[] SKIP_PHASE = {0, 1, 0, 1, 2, 3, 0, 1, 2, 3, 4, 5, 0, 1, 2, 3, 4, 5, 6, 7};
+
+	final SmartAI owner;
+	final int id;
+	final MoveList[] moveLists = new MoveList[SmartAI.MAX_PLY];
+	final UndoInfo[] undos = new UndoInfo[SmartAI.MAX_PLY];
+	final MoveOrdering ordering = new MoveOrdering(SmartAI.MAX_PLY);
+
+	Board board;
+	int[] rootMoves;
+	int rootCount;
+
+	long nodes;
+	long elapsed;
+	int completedDepth;
+	int best;
+	int bestScore;
+	int rootBest;
+	
+	// whether the move made at each ply was a null move, so two are never made in a row
+	final boolean[] nullMoves = new boolean[SmartAI.MAX_PLY];
+	// scratch space for tablebase lookups
+	final int[] tablebaseSquares = new int[Tablebase.MAX_PIECES];
+
+	SearchWorker(SmartAI owner, int id) {
+		this.owner = owner;
+		this.id = id;
+		for (int i = 0; i < SmartAI.MAX_PLY; i++) {
+			moveLists[i] = new MoveList();
+			undos[i] = new UndoInfo();
+		}
+	}
+
+	public void prepare(Board b, int[] rootMoves, int rootCount) {
+		this.board = new Board(b);
+		this.rootMoves = rootMoves.clone();
+		this.rootCount = rootCount;
+		ordering.newSearch();
+		nodes = 0;
+		elapsed = 0;
+		completedDepth = 0;
+		best = rootMoves[0];
+		bestScore = -SmartAI.INFINITY;
+	}
+
+	// iterative deepening: searches one ply deeper at a time until the clock says stop or another thread
+	// stops the search, with helpers passing over the depths they skip; the limits are read afresh every
+	// iteration, as a ponder hit may change them mid-search
+	public void iterate() {
+		long previousNodes = 0;
+		for (int depth = 1; depth <= owner.maxDepth && owner.time.canStartIteration(); depth++) {
+			if (skips(depth)) {
+				continue;
+			}
+			// aspiration windows: expect about the last iteration's score, and widen the window on the side
+			// the score fell outside of until it lands inside
+			int delta = SmartAI.ASPIRATION_WINDOW;
+			int alpha = -SmartAI.INFINITY;
+			int beta = SmartAI.INFINITY;
+			if (completedDepth > 0 && !SmartAI.isMate(bestScore)) {
+				alpha = Math.max(-SmartAI.INFINITY, bestScore - delta);
+				beta = Math.min(SmartAI.INFINITY, bestScore + delta);
+			}
+			
+			int iterationScore;
+			int iterationBest = best;
+			while (true) {
+				iterationScore = searchRoot(depth, alpha, beta);
+				if (owner.stopped) {
+					break;
+				}
+				
+				delta *= 2;
+				if (iterationScore <= alpha) {
+					alpha = Math.max(-SmartAI.INFINITY, alpha - delta);
+				}
+				else if (iterationScore >= beta) {
+					// a move that fails high is at least better than the rest, so it is kept even if the wider search is cut short
+					iterationBest = rootBest;
+					beta = Math.min(SmartAI.INFINITY, beta + delta);
+				}
+				else {
+					iterationBest = rootBest;
+					break;
+				}
+			}
+
+			if (owner.stopped) {
+				// the unfinished search is thrown away, but a move that failed high before it still beats the last best
+				best = iterationBest;
+				break;
+			}
+
+			best = iterationBest;
+			bestScore = iterationScore;
+			completedDepth = depth;
+			elapsed = owner.time.elapsed();
+			if (id == 0 && owner.verbose) {
+				long total = owner.totalNodes();
+				// the effective branching factor is how many times more nodes this iteration took than the last
+				System.out.println("depth " + depth + " score " + iterationScore + " best " + Moves.uci(best)
+						+ " nodes " + total + " time " + elapsed / 1000000 + "ms"
+						+ " ebf " + (previousNodes == 0 ? "-" : String.format("%.2f", (double) total / previousNodes)));
+				previousNodes = total;
+			}
+			if (id == 0 && owner.listener != null) {
+				owner.listener.iteration(depth, iterationScore, owner.totalNodes(), elapsed, principalLine(depth));
+			}
+
+			// search the best move first next time
+			for (int i = 0; i < rootCount; i++) {
+				if (rootMoves[i] == best) {
+					rootMoves[i] = rootMoves[0];
+					rootMoves[0] = best;
+				}
+			}
+
+			if (SmartAI.isMate(iterationScore)) {
+				break;
+			}
+		}
+		elapsed = owner.time.elapsed();
+	}
+	
+	// the main thread searches every depth
+	public boolean skips(int depth) {
+		if (id == 0) {
+			return false;
+		}
+		int i = (id - 1) % SKIP_SIZE.length;
+		return (depth + SKIP_PHASE[i]) / SKIP_SIZE[i] % 2 != 0;
+	}
+	
+	// the best line as far as the table remembers it: the best move, then the table's move in each position
+	// after it for as long as that move is legal there
+	public int[] principalLine(int max) {
+		Board b = new Board(board);
+		UndoInfo u = new UndoInfo();
+		int[] ans = new int[max];
+		int n = 0;
+		for (int move = best; move != Moves.NONE && n < max && MoveGenerator.isLegal(b, move); n++) {
+			ans[n] = move;
+			b.make(move, u);
+			move = TranspositionTable.move(owner.table.probe(b.key));
+		}
+		return Arrays.copyOf(ans, n);
+	}
+	
+	// one iteration's search of the root moves within alpha..beta, leaving the best of them in rootBest
+	public int searchRoot(int depth, int alpha, int beta) {
+		int ans = -SmartAI.INFINITY;
+		rootBest = Moves.NONE;
+		for (int i = 0; i < rootCount; i++) {
+			int move = rootMoves[i];
+			board.make(move, undos[0]);
+			int score = principalVariation(board, depth-1, alpha, beta, 1, i == 0, 0);
+			board.unmake(undos[0]);
+
+			if (owner.stopped) {
+				return 0;
+			}
+			if (score > ans) {
+				ans = score;
+				rootBest = move;
+			}
+			alpha = Math.max(alpha, ans);
+			if (alpha >= beta) {
+				break;
+			}
+		}
+		return ans;
+	}
+	
+	// the score of the move just made on b for the side that made it: the first move gets the whole window, the rest
+	// are only checked for being no better than alpha with a null window, and searched again in full if they are;
+	// a reduced move is checked at the shallower depth first, and at the full depth only if it beats alpha there
+	public int principalVariation(Board b, int depth, int alpha, int beta, int ply, boolean first, int reduction) {
+		if (first) {
+			return -alphaBeta(b, depth, -beta, -alpha, ply);
+		}
+		
+		int score = -alphaBeta(b, depth - reduction, -alpha-1, -alpha, ply);
+		if (reduction > 0 && score > alpha && !owner.stopped) {
+			score = -alphaBeta(b, depth, -alpha-1, -alpha, ply);
+		}
+		if (score > alpha && score < beta && !owner.stopped) {
+			score = -alphaBeta(b, depth, -beta, -alpha, ply);
+		}
+		return score;
+	}
+	
+	// mate scores count plies from the root, but the table may hand an entry to the same position at another ply,
+	// so they are stored counting from the position itself
+	public static int toTable(int score, int ply) {
+		if (score >= SmartAI.MATE_BOUND) {
+			return score + ply;
+		}
+		if (score <= -SmartAI.MATE_BOUND) {
+			return score - ply;
+		}
+		return score;
+	}
+	
+	public static int fromTable(int score, int ply) {
+		if (score >= SmartAI.MATE_BOUND) {
+			return score - ply;
+		}
+		if (score <= -SmartAI.MATE_BOUND) {
+			return score + ply;
+		}
+		return score;
+	}
+
+	// negamax: scores are from the point of view of the side to move on b
+	// once the search is stopped every call returns 0 straight away, and the caller throws the result out
+	public int alphaBeta(Board b, int depth, int alpha, int beta, int ply) {
+		if (++nodes % SmartAI.NODES_BETWEEN_TIME_CHECKS == 0 && owner.time.outOfTime()) {
+			owner.stopped = true;
+		}
+		if (owner.stopped) {
+			return 0;
+		}
+
+		if (b.fiftyMoveDraw() || b.insufficientMaterial()) {
+			return 0;
+		}
+		
+		// the distance to mate ignores the fifty move rule, as the tables do
+		Tablebases tablebases = owner.tablebases;
+		if (tablebases != null && Bitboard.count(b.occupied) <= tablebases.maxPieces) {
+			int value = tablebases.probe(b, tablebaseSquares);
+			if (value != Tablebases.UNKNOWN) {
+				if (Tablebase.isWin(value)) {
+					return SmartAI.MATE - ply - Tablebase.dtm(value);
+				}
+				if (Tablebase.isLoss(value)) {
+					return -SmartAI.MATE + ply + Tablebase.dtm(value);
+				}
+				return 0;
+			}
+		}
+
+		TranspositionTable table = owner.table;
+		int alphaOriginal = alpha;
+
+		long entry = table.probe(b.key);
+		int hashMove = TranspositionTable.move(entry);
+		if (entry != 0 && TranspositionTable.depth(entry) >= depth) {
+			int score = fromTable(TranspositionTable.score(entry), ply);
+			byte flag = TranspositionTable.flag(entry);
+			if (flag == TranspositionTable.EXACT) {
+				return score;
+			}
+			if (flag == TranspositionTable.LOWER_BOUND) {
+				alpha = Math.max(alpha, score);
+			}
+			else {
+				beta = Math.min(beta, score);
+			}
+			if (alpha >= beta) {
+				return score;
+			}
+		}
+
+		if (depth <= 0 || ply >= SmartAI.MAX_PLY - 1) {
+			return quiesce(b, alpha, beta, ply);
+		}
+		
+		boolean inCheck = b.inCheck(b.turn);
+		
+		// null move pruning: if the side to move could pass and a shallower search still can't get the opponent
+		// back under beta, some real move would fail high too; never in check, twice in a row, or with only
+		// pawns left, where passing may well be better than every move (zugzwang)
+		if (owner.nullMove && !inCheck && depth >= SmartAI.NULL_MOVE_MIN_DEPTH && beta - alpha == 1
+				&& !nullMoves[ply-1] && !SmartAI.isMate(beta) && b.hasNonPawnMaterial(b.turn)
+				&& owner.evaluate(b) >= beta) {
+			nullMoves[ply] = true;
+			b.makeNull(undos[ply]);
+			int score = -alphaBeta(b, depth - 1 - SmartAI.NULL_MOVE_REDUCTION, -beta, -beta+1, ply+1);
+			b.unmakeNull(undos[ply]);
+			nullMoves[ply] = false;
+			
+			if (owner.stopped) {
+				return 0;
+			}
+			// a mate found after passing proves nothing about the real moves
+			if (score >= beta) {
+				return SmartAI.isMate(score) ? beta : score;
+			}
+		}
+
+		int ans = -SmartAI.INFINITY;
+		int bestMove = Moves.NONE;
+		MoveList list = moveLists[ply];
+		MoveGenerator.generate(b, b.turn, list);
+		ordering.score(b, list, hashMove, ply);
+		int searched = 0;
+		for (int i = 0; i < list.size(); i++) {
+			int move = list.pick(i);
+			if (!MoveGenerator.legal(b, list, move)) {
+				continue;
+			}
+
+			b.make(move, undos[ply]);
+			boolean givesCheck = b.inCheck(b.turn);
+			
+			// check extensions: checks are searched a ply deeper, so forcing lines are followed to their end
+			int newDepth = depth - 1;
+			if (owner.checkExtensions && givesCheck) {
+				newDepth++;
+			}
+			
+			// late move reductions: quiet moves ordered after the first few rarely turn out best,
+			// so they are searched a ply or two shallower unless that shows they beat alpha
+			int reduction = 0;
+			if (owner.lateMoveReductions && searched >= SmartAI.LMR_MOVES && depth >= SmartAI.LMR_MIN_DEPTH
+					&& !inCheck && !givesCheck && !Moves.isCapture(move) && !Moves.isPromotion(move)
+					&& list.scores[i] < MoveOrdering.KILLER) {
+				reduction = searched >= 2 * SmartAI.LMR_MOVES ? 2 : 1;
+			}
+			
+			int score = principalVariation(b, newDepth, alpha, beta, ply+1, searched == 0, reduction);
+			b.unmake(undos[ply]);
+
+			if (owner.stopped) {
+				return 0;
+			}
+
+			if (score > ans) {
+				ans = score;
+				bestMove = move;
+			}
+			alpha = Math.max(alpha, ans);
+			if (alpha >= beta) {
+				ordering.cutoff(b, move, depth, ply, searched);
+				break;
+			}
+			searched++;
+		}
+		
+		// no legal moves: checkmate or stalemate
+		if (ans == -SmartAI.INFINITY) {
+			ans = inCheck ? -SmartAI.MATE + ply : 0;
+		}
+
+		byte flag = TranspositionTable.EXACT;
+		if (ans <= alphaOriginal) {
+			flag = TranspositionTable.UPPER_BOUND;
+		}
+		else if (ans >= beta) {
+			flag = TranspositionTable.LOWER_BOUND;
+		}
+		table.store(b.key, toTable(ans, ply), depth, flag, bestMove);
+		return ans;
+	}
+
+	// searches captures only until the position is quiet, so leaves are not scored in the middle of an exchange;
+	// the side to move may always "stand pat" on the static score instead of capturing, unless it is in check
+	public int quiesce(Board b, int alpha, int beta, int ply) {
+		if (++nodes % SmartAI.NODES_BETWEEN_TIME_CHECKS == 0 && owner.time.outOfTime()) {
+			owner.stopped = true;
+		}
+		if (owner.stopped) {
+			return 0;
+		}
+
+		boolean inCheck = b.inCheck(b.turn);
+		int standPat = owner.evaluate(b);
+		if (ply >= SmartAI.MAX_PLY - 1) {
+			return standPat;
+		}
+
+		int ans = -SmartAI.INFINITY;
+		if (!inCheck) {
+			if (standPat >= beta) {
+				return standPat;
+			}
+			alpha = Math.max(alpha, standPat);
+			ans = standPat;
+		}
+
+		MoveList list = moveLists[ply];
+		if (inCheck) {
+			MoveGenerator.generate(b, b.turn, list);
+		}
+		else {
+			MoveGenerator.generateCaptures(b, b.turn, list);
+		}
+		ordering.score(b, list, Moves.NONE, ply);
+
+		for (int i = 0; i < list.size(); i++) {
+			int move = list.pick(i);
+			// delta pruning: even winning this piece for free would not get back to alpha
+			if (!inCheck && standPat + MoveOrdering.victimValue(b, move) + SmartAI.DELTA_MARGIN < alpha) {
+				continue;
+			}
+			if (!MoveGenerator.legal(b, list, move)) {
+				continue;
+			}
+
+			b.make(move, undos[ply]);
+			int score = -quiesce(b, -beta, -alpha, ply+1);
+			b.unmake(undos[ply]);
+
+			if (owner.stopped) {
+				return 0;
+			}
+
+			if (score > ans) {
+				ans = score;
+			}
+			alpha = Math.max(alpha, ans);
+			if (alpha >= beta) {
+				break;
+			}
+		}
+
+		// in check with no way out
+		if (ans == -SmartAI.INFINITY) {
+			return -SmartAI.MATE + ply;
+		}
+		return ans;
+	}
+
+	public String stats() {
+		return "thread " + id + ": depth " + completedDepth + ", " + nodes + " nodes, "
+				+ Perft.nodesPerSecond(nodes, elapsed) + " nps";
+	}
+}
+
+// told about every iteration the main search thread finishes, with the best line found
+interface SearchListener {
+	void iteration(int depth, int score, long nodes, long elapsed, int[] line);
+}
+
+class ExamplesSearchWorker {
+	// the depths out of the first twelve each thread searches, as a string of 1s and 0s
+	String schedule(SmartAI ai, int id) {
+		SearchWorker w = new SearchWorker(ai, id);
+		String ans = "";
+		for (int depth = 1; depth <= 12; depth++) {
+			ans += w.skips(depth) ? "0" : "1";
+		}
+		return ans;
+	}
+
+	void testSkipSchedule(Tester t) {
+		SmartAI ai = new SmartAI(Side.WHITE);
+		t.checkExpect(schedule(ai, 0), "111111111111");
+		t.checkExpect(schedule(ai, 1), "010101010101");
+		t.checkExpect(schedule(ai, 2), "101010101010");
+		t.checkExpect(schedule(ai, 3), "100110011001");
+		t.checkExpect(schedule(ai, 7), "110001110001");
+		// no two of the first twenty helpers search the same depths
+		Set<String> schedules = new HashSet<>();
+		for (int id = 1; id <= SearchWorker.SKIP_SIZE.length; id++) {
+			schedules.add(schedule(ai, id));
+		}
+		t.checkExpect(schedules.size(), SearchWorker.SKIP_SIZE.length);
+	}
+
+	// the second iteration's first search fails high with e4, and the search is stopped while e4 is searched again
+	// with the window widened
+	void testFailHighKeptWhenStopped(Tester t) {
+		SmartAI ai = new SmartAI(Side.WHITE);
+		ai.setDepth(5);
+		ai.limit();
+		Board b = new Board(Variant.STANDARD);
+		int d4 = Moves.fromUci(b, "d2d4");
+		int e4 = Moves.fromUci(b, "e2e4");
+		int[] searched = new int[1];
+		SearchWorker worker = new SearchWorker(ai, 0) {
+			public int searchRoot(int depth, int alpha, int beta) {
+				searched[0]++;
+				if (depth == 1) {
+					rootBest = d4;
+					return 10;
+				}
+				if (searched[0] == 2) {
+					rootBest = e4;
+					return beta;
+				}
+				ai.stopped = true;
+				rootBest = d4;
+				return alpha;
+			}
+		};
+		worker.prepare(b, new int[] {d4, e4}, 2);
+		worker.iterate();
+		t.checkExpect(searched[0], 3);
+		t.checkExpect(worker.completedDepth, 1);
+		t.checkExpect(Moves.uci(worker.best), "e2e4");
+	}
+}
@@ -0,0 +1,789 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import tester.*;
+
+// one endgame table: a byte for every placement of its pieces with either side to move, holding the result with
+// best play for the side to move together with the plies to mate (DTM). a table is named by its material, white's
+// pieces then black's, each side starting with its king ("KQK", "KRKP"), and white is always the stronger side;
+// positions with black the stronger side are looked up with the colors swapped and the board turned upside down.
+// castling and en passant rights are left out, positions that have them are never looked up.
+// the file is a 16 byte header (magic, version, entry count) followed by the entries, and is mapped rather than read
+class Tablebase {
+	static final int MAGIC = 0x43535442; // "CSTB"
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 16;
+	static final int MAX_PIECES = 32; // as many as a board holds, so room enough for index's squares
+
+	// an entry is DRAW, 1 to 127 for a win mating in that many plies, or LOST plus the plies until mated
+	static final int DRAW = 0;
+	static final int LOST = 128;
+	static final int MAX_DTM = 125;
+	static final int UNRESOLVED = 254; // only while generating, whatever is left at the end is a draw
+	static final int ILLEGAL = 255;
+
+	// the pieces of each side in the order a signature lists them
+	static final String ORDER = "KQRBNP";
+
+	// without pawns the board can be mirrored and turned eight ways, so the white king is moved into the triangle
+	// a8-a5-d5; pawns only allow the left-right mirror, and the white king is moved onto files a to d
+	static final int[] TRIANGLE = new int[64];
+	static final int[] TRIANGLE_SQUARES = new int[10];
+	static final int[] HALF = new int[64];
+	static final int[] HALF_SQUARES = new int[32];
+
+	static {
+		Arrays.fill(TRIANGLE, -1);
+		Arrays.fill(HALF, -1);
+		int triangle = 0;
+		int half = 0;
+		for (int sq = 0; sq < 64; sq++) {
+			int x = sq & 7;
+			int y = sq >>> 3;
+			if (x <= 3) {
+				HALF[sq] = half;
+				HALF_SQUARES[half++] = sq;
+			}
+			if (x <= y && y <= 3) {
+				TRIANGLE[sq] = triangle;
+				TRIANGLE_SQUARES[triangle++] = sq;
+			}
+		}
+	}
+
+	public static boolean isWin(int value) {
+		return value >= 1 && value < LOST;
+	}
+
+	public static boolean isLoss(int value) {
+		return value >= LOST && value <= LOST + MAX_DTM;
+	}
+
+	public static int dtm(int value) {
+		return isLoss(value) ? value - LOST : value;
+	}
+
+	public static int win(int plies) {
+		return plies;
+	}
+
+	public static int loss(int plies) {
+		if (plies > MAX_DTM) {
+			throw new IllegalStateException("mate in " + plies + " plies does not fit in an entry");
+		}
+		return LOST + plies;
+	}
+
+	final String signature;
+	final int pieces;
+	final int[] types; // each piece's type, white's pieces first
+	final boolean[] black;
+	final boolean pawns;
+	final int[] kingIndex;
+	final int[] kingSquares;
+	final int size;
+
+	// the entries, either an array being generated or a mapped file
+	ByteBuffer data;
+	int offset;
+
+	Tablebase(String signature) {
+		int split = signature.indexOf('K', 1);
+		if (!signature.startsWith("K") || split < 0 || signature.indexOf('K', split + 1) >= 0) {
+			throw new IllegalArgumentException("not a tablebase signature: " + signature);
+		}
+
+		this.signature = signature;
+		pieces = signature.length();
+		types = new int[pieces];
+		black = new boolean[pieces];
+		boolean pawns = false;
+		for (int i = 0; i < pieces; i++) {
+			char c = signature.charAt(i);
+			if (ORDER.indexOf(c) < 0) {
+				throw new IllegalArgumentException("not a tablebase signature: " + signature);
+			}
+			types[i] = Piece.FEN_LETTERS.indexOf(Character.toLowerCase(c));
+			black[i] = i >= split;
+			pawns |= types[i] == Piece.PAWN;
+		}
+		this.pawns = pawns;
+		kingIndex = pawns ? HALF : TRIANGLE;
+		kingSquares = pawns ? HALF_SQUARES : TRIANGLE_SQUARES;
+		size = 2 * kingSquares.length << 6 * (pieces - 1);
+	}
+
+	public static Tablebase map(String path) throws IOException {
+		String name = Paths.get(path).getFileName().toString();
+		Tablebase ans = new Tablebase(name.substring(0, name.indexOf('.')));
+		MappedByteBuffer mapped;
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		mapped.order(ByteOrder.BIG_ENDIAN);
+		if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION || mapped.getLong(8) != ans.size) {
+			throw new IOException(path + " is not a " + ans.signature + " table");
+		}
+		ans.data = mapped;
+		ans.offset = HEADER_BYTES;
+		return ans;
+	}
+
+	public void write(String path) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(size);
+			for (int i = 0; i < size; i++) {
+				out.writeByte(get(i));
+			}
+		}
+	}
+
+	public int get(int index) {
+		return data.get(offset + index) & 0xFF;
+	}
+
+	// the index of the position on b, seen with the colors swapped and the board upside down if flip;
+	// sq is scratch space for the pieces' squares, so looking positions up allocates nothing
+	public int index(Board b, boolean flip, int[] sq) {
+		int n = 0;
+		for (int i = 0; i < pieces; i = n) {
+			Side s = black[i] != flip ? Side.BLACK : Side.WHITE;
+			for (long bb = b.bitboards[s.ordinal()][types[i]]; bb != 0; bb &= bb - 1) {
+				sq[n++] = flip ? Bitboard.first(bb) ^ 56 : Bitboard.first(bb);
+			}
+		}
+
+		// the white king picks the symmetry
+		int flips = 0;
+		if ((sq[0] & 7) > 3) {
+			flips |= 7;
+		}
+		if (!pawns && (sq[0] ^ flips) >>> 3 > 3) {
+			flips |= 56;
+		}
+		boolean transpose = !pawns && ((sq[0] ^ flips) & 7) > (sq[0] ^ flips) >>> 3;
+		for (int i = 0; i < pieces; i++) {
+			sq[i] ^= flips;
+			if (transpose) {
+				sq[i] = transpose(sq[i]);
+			}
+		}
+
+		int stm = b.turn.equals(Side.BLACK) != flip ? 1 : 0;
+		int ans = encode(sq, stm);
+		// with the white king on the diagonal either way round fits, and the smaller index is the one used
+		if (!pawns && (sq[0] & 7) == sq[0] >>> 3) {
+			for (int i = 0; i < pieces; i++) {
+				sq[i] = transpose(sq[i]);
+			}
+			ans = Math.min(ans, encode(sq, stm));
+		}
+		return ans;
+	}
+
+	static int transpose(int sq) {
+		return (sq & 7) << 3 | sq >>> 3;
+	}
+
+	// pieces of the same kind are listed in square order
+	int encode(int[] sq, int stm) {
+		for (int i = 2; i < pieces; i++) {
+			for (int j = i; j > 1 && types[j] == types[j-1] && black[j] == black[j-1] && sq[j] < sq[j-1]; j--) {
+				int swap = sq[j];
+				sq[j] = sq[j-1];
+				sq[j-1] = swap;
+			}
+		}
+
+		int ans = stm * kingSquares.length + kingIndex[sq[0]];
+		for (int i = 1; i < pieces; i++) {
+			ans = ans << 6 | sq[i];
+		}
+		return ans;
+	}
+
+	// fills in the squares of the index's pieces and returns the side to move, 0 for white
+	public int decode(int index, int[] sq) {
+		for (int i = pieces - 1; i > 0; i--) {
+			sq[i] = index & 63;
+			index >>>= 6;
+		}
+		sq[0] = kingSquares[index % kingSquares.length];
+		return index / kingSquares.length;
+	}
+}
+
+// every table found in a folder, looked up by the material on the board
+class Tablebases {
+	static final int UNKNOWN = -1;
+	// a side's material packs three bits of count for each piece type but the king, and a position's is white's
+	// then black's, so probing finds its table by number without building a signature
+	static final int MATERIAL_BITS = 15;
+
+	final Map<String, Tablebase> tables = new HashMap<>();
+	int maxPieces;
+
+	// every table under both of the materials it answers for, sorted by material; flipped when black is the stronger side
+	long[] materials = new long[0];
+	Tablebase[] byMaterial = new Tablebase[0];
+	boolean[] flipped = new boolean[0];
+
+	public static Tablebases load(String folder) throws IOException {
+		Tablebases ans = new Tablebases();
+		File[] files = new File(folder).listFiles((dir, name) -> name.endsWith(".tb"));
+		if (files != null) {
+			for (File f : files) {
+				ans.add(Tablebase.map(f.getPath()));
+			}
+		}
+		return ans;
+	}
+
+	public void add(Tablebase t) {
+		tables.put(t.signature, t);
+		maxPieces = Math.max(maxPieces, t.pieces);
+
+		int split = t.signature.indexOf('K', 1);
+		long strong = material(t.signature.substring(0, split));
+		long weak = material(t.signature.substring(split));
+		index(strong | weak << MATERIAL_BITS, t, false);
+		if (strong != weak) {
+			index(weak | strong << MATERIAL_BITS, t, true);
+		}
+	}
+
+	// puts t in the sorted arrays, replacing a table for the same material
+	public void index(long material, Tablebase t, boolean flip) {
+		int i = Arrays.binarySearch(materials, material);
+		if (i < 0) {
+			i = -i - 1;
+			materials = insert(materials, i, material);
+			byMaterial = Arrays.copyOf(byMaterial, byMaterial.length + 1);
+			System.arraycopy(byMaterial, i, byMaterial, i + 1, byMaterial.length - i - 1);
+			boolean[] grown = new boolean[flipped.length + 1];
+			System.arraycopy(flipped, 0, grown, 0, i);
+			System.arraycopy(flipped, i, grown, i + 1, flipped.length - i);
+			flipped = grown;
+		}
+		byMaterial[i] = t;
+		flipped[i] = flip;
+	}
+
+	static long[] insert(long[] a, int i, long value) {
+		long[] ans = new long[a.length + 1];
+		System.arraycopy(a, 0, ans, 0, i);
+		ans[i] = value;
+		System.arraycopy(a, i, ans, i + 1, a.length - i);
+		return ans;
+	}
+
+	public boolean has(String signature) {
+		return tables.containsKey(signature);
+	}
+
+	public int size() {
+		return tables.size();
+	}
+
+	// one side's half of a signature as a material number
+	public static long material(String side) {
+		long ans = 0;
+		for (int i = 0; i < side.length(); i++) {
+			int type = Piece.FEN_LETTERS.indexOf(Character.toLowerCase(side.charAt(i)));
+			if (type != Piece.KING) {
+				ans += 1L << 3 * type;
+			}
+		}
+		return ans;
+	}
+
+	// the same for one side of a board; a count past seven would spill over, but probe never gets that far
+	public static long material(Board b, Side s) {
+		long[] bitboards = b.bitboards[s.ordinal()];
+		long ans = 0;
+		for (int type = Piece.PAWN; type < Piece.KING; type++) {
+			ans += (long) Bitboard.count(bitboards[type]) << 3 * type;
+		}
+		return ans;
+	}
+
+	// whether one side's pieces outweigh the other's, with ties broken so that exactly one way round is stronger
+	public static boolean stronger(String one, String other) {
+		int difference = value(one) - value(other);
+		if (difference == 0) {
+			difference = one.length() - other.length();
+		}
+		if (difference == 0) {
+			difference = one.compareTo(other);
+		}
+		return difference > 0;
+	}
+
+	public static int value(String side) {
+		int ans = 0;
+		for (int i = 0; i < side.length(); i++) {
+			ans += PieceSquare.VALUES[Piece.FEN_LETTERS.indexOf(Character.toLowerCase(side.charAt(i)))];
+		}
+		return ans;
+	}
+
+	// the name of the table holding a position with this material
+	public static String signature(String white, String black) {
+		return stronger(black, white) ? black + white : white + black;
+	}
+
+	// the entry for b from the side to move's point of view, or UNKNOWN if there is no table for it
+	public int probe(Board b) {
+		return probe(b, new int[Tablebase.MAX_PIECES]);
+	}
+
+	// the same with scratch space for Tablebase.index, which the search keeps one of per thread
+	public int probe(Board b, int[] squares) {
+		if (b.castling != 0 || b.enpassant >= 0) {
+			return UNKNOWN;
+		}
+		int count = Bitboard.count(b.occupied);
+		if (count == 2) {
+			return Tablebase.DRAW;
+		}
+		if (count > maxPieces) {
+			return UNKNOWN;
+		}
+
+		long material = material(b, Side.WHITE) | material(b, Side.BLACK) << MATERIAL_BITS;
+		int i = Arrays.binarySearch(materials, material);
+		if (i < 0) {
+			return UNKNOWN;
+		}
+		Tablebase t = byMaterial[i];
+		int value = t.get(t.index(b, flipped[i], squares));
+		return value == Tablebase.ILLEGAL ? UNKNOWN : value;
+	}
+}
+
+// builds tables by retrograde analysis: positions that are mate, or that win at once by leaving the table for a
+// smaller one, are found first, and then results are spread backwards one ply at a time by taking moves back,
+// so every position is settled at the first ply that settles it and its distance to mate comes for free. a position
+// one move before a loss is a win; one before a win is a loss once every move it has is known to lose.
+// tables for the material every capture and promotion leads to are built (or loaded) first. run it from the
+// Pictures folder, e.g.
+//   java TablebaseGenerator tablebases            every 3 man table
+//   java TablebaseGenerator tablebases KQKR KRKP  these and the tables they need
+class TablebaseGenerator {
+	static final String[] THREE_MAN = {"KQK", "KRK", "KBK", "KNK", "KPK"};
+
+	public static void main(String[] args) throws IOException {
+		Piece.headless = true;
+		String folder = args.length > 0 ? args[0] : "tablebases";
+		new File(folder).mkdirs();
+		TablebaseGenerator generator = new TablebaseGenerator(folder);
+		String[] signatures = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : THREE_MAN;
+		for (String signature : signatures) {
+			generator.generate(signature);
+		}
+	}
+
+	final String folder;
+	final Tablebases done;
+
+	final Board board = Board.fromFen("8/8/8/8/8/8/8/8 w - - 0 1");
+	final MoveList list = new MoveList();
+	final UndoInfo undo = new UndoInfo();
+	final int[] indexSquares = new int[Tablebase.MAX_PIECES];
+
+	Tablebase table;
+	byte[] values;
+	int[] squares;
+	Piece[] pieces;
+	int[][] plies;
+	int[] counts;
+
+	TablebaseGenerator(String folder) throws IOException {
+		this.folder = folder;
+		done = Tablebases.load(folder);
+	}
+
+	public void generate(String signature) throws IOException {
+		if (done.has(signature)) {
+			return;
+		}
+		Tablebase t = new Tablebase(signature);
+		for (String smaller : smaller(t)) {
+			generate(smaller);
+		}
+
+		long start = System.nanoTime();
+		table = t;
+		values = new byte[t.size];
+		squares = new int[t.pieces];
+		pieces = new Piece[t.pieces];
+		for (int i = 0; i < t.pieces; i++) {
+			pieces[i] = Piece.create(t.types[i], t.black[i] ? Side.BLACK : Side.WHITE);
+		}
+		plies = new int[Tablebase.MAX_DTM + 2][];
+		counts = new int[Tablebase.MAX_DTM + 2];
+
+		initialize();
+		for (int ply = 0; ply <= Tablebase.MAX_DTM; ply++) {
+			retrograde(ply);
+		}
+
+		int[] results = new int[3];
+		for (int i = 0; i < values.length; i++) {
+			int value = values[i] & 0xFF;
+			if (value == Tablebase.UNRESOLVED) {
+				values[i] = Tablebase.DRAW;
+				value = Tablebase.DRAW;
+			}
+			if (value != Tablebase.ILLEGAL) {
+				results[Tablebase.isWin(value) ? 0 : Tablebase.isLoss(value) ? 2 : 1]++;
+			}
+		}
+
+		t.data = ByteBuffer.wrap(values);
+		t.offset = 0;
+		t.write(folder + File.separator + signature + ".tb");
+		done.add(t);
+		System.out.println(signature + ": " + results[0] + " won, " + results[1] + " drawn, " + results[2] + " lost, "
+				+ (System.nanoTime() - start) / 1000000 + "ms");
+		table = null;
+		values = null;
+		plies = null;
+	}
+
+	// the tables a capture or a promotion can lead to
+	public static Set<String> smaller(Tablebase t) {
+		Set<String> ans = new LinkedHashSet<>();
+		for (int i = 1; i < t.pieces; i++) {
+			if (t.types[i] == Piece.KING) {
+				continue;
+			}
+			ans.add(without(t, i, ""));
+			if (t.types[i] == Piece.PAWN) {
+				for (String promotion : new String[] {"Q", "R", "B", "N"}) {
+					ans.add(without(t, i, promotion));
+				}
+			}
+		}
+		ans.remove("KK");
+		return ans;
+	}
+
+	// the signature with piece i replaced
+	static String without(Tablebase t, int i, String replacement) {
+		int split = t.signature.indexOf('K', 1);
+		String white = t.signature.substring(0, split);
+		String black = t.signature.substring(split);
+		if (t.black[i]) {
+			black = sorted(black.substring(0, i - split) + replacement + black.substring(i - split + 1));
+		}
+		else {
+			white = sorted(white.substring(0, i) + replacement + white.substring(i + 1));
+		}
+		return Tablebases.signature(white, black);
+	}
+
+	static String sorted(String side) {
+		char[] ans = side.toCharArray();
+		Character[] boxed = new Character[ans.length];
+		for (int i = 0; i < ans.length; i++) {
+			boxed[i] = ans[i];
+		}
+		Arrays.sort(boxed, (c1, c2) -> Tablebase.ORDER.indexOf(c1) - Tablebase.ORDER.indexOf(c2));
+		StringBuilder sb = new StringBuilder();
+		for (Character c : boxed) {
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	// puts the position with this index on the board, or returns false if it cannot happen in a game or is
+	// stored under another index
+	public boolean setUp(int index) {
+		int stm = table.decode(index, squares);
+		long used = 0;
+		for (int i = 0; i < table.pieces; i++) {
+			int sq = squares[i];
+			if (Bitboard.has(used, sq) || table.types[i] == Piece.PAWN && (sq >>> 3 == 0 || sq >>> 3 == 7)) {
+				return false;
+			}
+			used |= Bitboard.bit(sq);
+		}
+
+		for (long bb = board.occupied; bb != 0; bb &= bb - 1) {
+			board.clearSquare(Bitboard.first(bb));
+		}
+		for (int i = 0; i < table.pieces; i++) {
+			board.setPiece(squares[i], pieces[i]);
+		}
+		board.turn = stm == 0 ? Side.WHITE : Side.BLACK;
+		board.castling = 0;
+		board.enpassant = -1;
+		board.fiftyMoveCounter = 0;
+		board.checkers = board.computeCheckers();
+
+		// a position that can be written more than one way (two of a kind swapped, or turned about the diagonal)
+		// is only stored under the index that looking it up gives
+		if (table.index(board, false, indexSquares) != index) {
+			return false;
+		}
+		// the side that just moved cannot be left in check
+		Side moved = board.turn.opponent();
+		return !board.attacked(board.kingSquare(moved), moved);
+	}
+
+	// the entry for the position after the move, from its side to move's point of view
+	public int child(int move) {
+		board.make(move, undo);
+		int ans;
+		if (Moves.isCapture(move) || Moves.isPromotion(move)) {
+			ans = done.probe(board, indexSquares);
+			if (ans == Tablebases.UNKNOWN) {
+				throw new IllegalStateException("no table for " + board.fen());
+			}
+		}
+		else {
+			ans = values[table.index(board, false, indexSquares)] & 0xFF;
+		}
+		board.unmake(undo);
+		return ans;
+	}
+
+	public void add(int ply, int index) {
+		if (ply > Tablebase.MAX_DTM) {
+			throw new IllegalStateException(table.signature + " has a mate longer than " + Tablebase.MAX_DTM + " plies");
+		}
+		if (plies[ply] == null) {
+			plies[ply] = new int[1024];
+		}
+		else if (counts[ply] == plies[ply].length) {
+			plies[ply] = Arrays.copyOf(plies[ply], counts[ply] * 2);
+		}
+		plies[ply][counts[ply]++] = index;
+	}
+
+	// settles mates and stalemates, and queues the positions that can win by capturing or promoting at the ply
+	// they would win in; a position whose every move leaves the table is settled outright
+	public void initialize() {
+		for (int index = 0; index < table.size; index++) {
+			if (!setUp(index)) {
+				values[index] = (byte) Tablebase.ILLEGAL;
+				continue;
+			}
+			values[index] = (byte) Tablebase.UNRESOLVED;
+
+			MoveGenerator.generate(board, board.turn, list);
+			int moves = 0;
+			int quiet = 0;
+			int fastestWin = Integer.MAX_VALUE;
+			int slowestLoss = 0;
+			boolean draw = false;
+			for (int i = 0; i < list.size(); i++) {
+				int move = list.get(i);
+				if (!MoveGenerator.legal(board, list, move)) {
+					continue;
+				}
+				moves++;
+				if (!Moves.isCapture(move) && !Moves.isPromotion(move)) {
+					quiet++;
+					continue;
+				}
+
+				int value = child(move);
+				if (Tablebase.isLoss(value)) {
+					fastestWin = Math.min(fastestWin, Tablebase.dtm(value) + 1);
+				}
+				else if (Tablebase.isWin(value)) {
+					slowestLoss = Math.max(slowestLoss, Tablebase.dtm(value) + 1);
+				}
+				else {
+					draw = true;
+				}
+			}
+
+			if (moves == 0) {
+				values[index] = (byte) (board.checkers != 0 ? Tablebase.loss(0) : Tablebase.DRAW);
+				if (board.checkers != 0) {
+					add(0, index);
+				}
+			}
+			else if (fastestWin != Integer.MAX_VALUE) {
+				add(fastestWin, index);
+			}
+			else if (quiet == 0) {
+				if (draw) {
+					values[index] = Tablebase.DRAW;
+				}
+				else {
+					values[index] = (byte) Tablebase.loss(slowestLoss);
+					add(slowestLoss, index);
+				}
+			}
+		}
+	}
+
+	// spreads the results settled at this ply to the positions a move before them
+	public void retrograde(int ply) {
+		int[] predecessors = new int[256];
+		for (int k = 0; k < counts[ply]; k++) {
+			int index = plies[ply][k];
+			int value = values[index] & 0xFF;
+			// queued to win by leaving the table, unless a quicker win was found since
+			if (value == Tablebase.UNRESOLVED) {
+				value = Tablebase.win(ply);
+				values[index] = (byte) value;
+			}
+			if (Tablebase.dtm(value) != ply) {
+				continue;
+			}
+
+			setUp(index);
+			int n = unmoves(predecessors);
+			for (int i = 0; i < n; i++) {
+				int before = predecessors[i];
+				if ((values[before] & 0xFF) != Tablebase.UNRESOLVED) {
+					continue;
+				}
+				if (Tablebase.isLoss(value)) {
+					values[before] = (byte) Tablebase.win(ply + 1);
+					add(ply + 1, before);
+				}
+				else {
+					int loss = lossIn(before);
+					if (loss >= 0) {
+						values[before] = (byte) Tablebase.loss(loss);
+						add(loss, before);
+					}
+				}
+			}
+		}
+		plies[ply] = null;
+	}
+
+	// the indices of the positions the side that just moved could have come from without a capture or promotion
+	public int unmoves(int[] ans) {
+		Side mover = board.turn.opponent();
+		int n = 0;
+		for (int type = Piece.PAWN; type <= Piece.KING; type++) {
+			for (long bb = board.bitboards[mover.ordinal()][type]; bb != 0; bb &= bb - 1) {
+				int to = Bitboard.first(bb);
+				long froms;
+				if (type == Piece.PAWN) {
+					int back = mover.equals(Side.WHITE) ? 8 : -8;
+					int row = to >>> 3;
+					froms = 0;
+					if (!Bitboard.has(board.occupied, to + back) && (to + back) >>> 3 != (mover.equals(Side.WHITE) ? 7 : 0)) {
+						froms |= Bitboard.bit(to + back);
+						if (row == (mover.equals(Side.WHITE) ? 4 : 3) && !Bitboard.has(board.occupied, to + 2 * back)) {
+							froms |= Bitboard.bit(to + 2 * back);
+						}
+					}
+				}
+				else {
+					froms = board.squares[to].attacks(to, board.occupied) & ~board.occupied;
+				}
+
+				for (; froms != 0; froms &= froms - 1) {
+					int from = Bitboard.first(froms);
+					Piece pi = board.clearSquare(to);
+					board.setPiece(from, pi);
+					board.turn = mover;
+					int index = table.index(board, false, indexSquares);
+					board.turn = mover.opponent();
+					board.clearSquare(from);
+					board.setPiece(to, pi);
+					if ((values[index] & 0xFF) != Tablebase.ILLEGAL) {
+						ans[n++] = index;
+					}
+				}
+			}
+		}
+		return n;
+	}
+
+	// the plies until mate if every move from the position is already known to lose, otherwise -1
+	public int lossIn(int index) {
+		setUp(index);
+		MoveGenerator.generate(board, board.turn, list);
+		int ans = -1;
+		for (int i = 0; i < list.size(); i++) {
+			int move = list.get(i);
+			if (!MoveGenerator.legal(board, list, move)) {
+				continue;
+			}
+			int value = child(move);
+			if (!Tablebase.isWin(value)) {
+				return -1;
+			}
+			ans = Math.max(ans, Tablebase.dtm(value) + 1);
+		}
+		return ans;
+	}
+}
+
+class ExamplesTablebase {
+	// KQK and KRK built into a fresh folder, then read back from it
+	Tablebases tables() throws IOException {
+		File folder = Files.createTempDirectory("tablebases").toFile();
+		folder.deleteOnExit();
+		TablebaseGenerator generator = new TablebaseGenerator(folder.getPath());
+		generator.generate("KQK");
+		generator.generate("KRK");
+		for (File f : folder.listFiles()) {
+			f.deleteOnExit();
+		}
+		return Tablebases.load(folder.getPath());
+	}
+
+	int probe(Tablebases tables, String fen) {
+		return tables.probe(Board.fromFen(fen));
+	}
+
+	// the longest win in plies, with the winning side to move
+	int longestWin(Tablebase t) {
+		int ans = 0;
+		for (int i = 0; i < t.size; i++) {
+			if (Tablebase.isWin(t.get(i))) {
+				ans = Math.max(ans, Tablebase.dtm(t.get(i)));
+			}
+		}
+		return ans;
+	}
+
+	void testTables(Tester t) throws IOException {
+		Tablebases tables = tables();
+		t.checkExpect(tables.size(), 2);
+		t.checkExpect(tables.maxPieces, 3);
+
+		// mate in one, and mated
+		t.checkExpect(probe(tables, "k7/8/1K6/8/8/8/7Q/8 w - - 0 1"), Tablebase.win(1));
+		t.checkExpect(probe(tables, "k7/1Q6/1K6/8/8/8/8/8 b - - 0 1"), Tablebase.loss(0));
+		t.checkExpect(probe(tables, "k7/8/1K6/8/8/8/8/7R w - - 0 1"), Tablebase.win(1));
+		// the same with black the stronger side, looked up with the colors swapped
+		t.checkExpect(probe(tables, "K7/8/1k6/8/8/8/8/7r b - - 0 1"), Tablebase.win(1));
+		t.checkExpect(probe(tables, "K7/1q6/1k6/8/8/8/8/8 w - - 0 1"), Tablebase.loss(0));
+		// stalemate, bare kings, and positions no table covers
+		t.checkExpect(probe(tables, "k7/8/1Q6/8/8/8/8/K7 b - - 0 1"), Tablebase.DRAW);
+		t.checkExpect(probe(tables, "k7/8/8/8/8/8/8/7K w - - 0 1"), Tablebase.DRAW);
+		t.checkExpect(probe(tables, "k7/8/8/8/8/8/P7/7K w - - 0 1"), Tablebases.UNKNOWN);
+		t.checkExpect(probe(tables, "k7/8/8/8/8/8/8/R3K3 w Q - 0 1"), Tablebases.UNKNOWN);
+
+		// mate in 10 moves at most with the queen, 16 with the rook
+		t.checkExpect(longestWin(tables.tables.get("KQK")), 19);
+		t.checkExpect(longestWin(tables.tables.get("KRK")), 31);
+	}
+
+	// the search sees the mate the table promises long before it could find it
+	void testSearch(Tester t) throws IOException {
+		SmartAI ai = new SmartAI(Side.WHITE);
+		ai.setTablebases(tables());
+		ai.setDepth(2);
+		Board b = Board.fromFen("8/8/8/4k3/8/8/8/R3K3 w - - 0 1");
+		t.checkExpect(ai.bestMove(b) != Moves.NONE, true);
+		t.checkExpect(SmartAI.isMate(ai.workers[0].bestScore), true);
+	}
+}
@@ -0,0 +1,247 @@
+// scores the middlegame and the endgame separately and blends them by how much material is left:
+// material, piece-square tables, mobility, king safety, pawn structure and the bishop pair
+class TaperedEvaluator implements Evaluator {
+	static final int[] MG_VALUES = {82, 337, 365, 477, 1025, 0};
+	static final int[] EG_VALUES = {94, 281, 297, 512, 936, 0};
+	static final int[] PHASES = {0, 1, 1, 2, 4, 0};
+	static final int TOTAL_PHASE = 24;
+
+	// the king comes out to the middle once the danger of mate is gone
+	static final int[] KING_ENDGAME = {
+			-50, -40, -30, -20, -20, -30, -40, -50,
+			-30, -20, -10, 0, 0, -10, -20, -30,
+			-30, -10, 20, 30, 30, 20, -10, -30,
+			-30, -10, 30, 40, 40, 30, -10, -30,
+			-30, -10, 30, 40, 40, 30, -10, -30,
+			-30, -10, 20, 30, 30, 20, -10, -30,
+			-30, -30, 0, 0, 0, 0, -30, -30,
+			-50, -30, -30, -30, -30, -30, -30, -50};
+
+	// per square a piece can go to that no enemy pawn guards, counted from a typical number
+	static final int[] MOBILITY_MG = {0, 4, 5, 2, 1, 0};
+	static final int[] MOBILITY_EG = {0, 4, 5, 4, 2, 0};
+	static final int[] MOBILITY_BASELINE = {0, 4, 6, 7, 13, 0};
+
+	static final int BISHOP_PAIR_MG = 30;
+	static final int BISHOP_PAIR_EG = 50;
+
+	// attacks on the squares around the enemy king, once at least two pieces join in
+	static final int[] KING_ATTACK_WEIGHTS = {0, 2, 2, 3, 5, 0};
+	static final int KING_DANGER_LIMIT = 400;
+	static final int SHIELD_NEAR = 10;
+	static final int SHIELD_FAR = 5;
+
+	// by how far the pawn has come from its own back rank
+	static final int[] PASSED_MG = {0, 5, 10, 15, 25, 40, 60, 0};
+	static final int[] PASSED_EG = {0, 10, 20, 35, 60, 100, 150, 0};
+	static final int DOUBLED_MG = -10;
+	static final int DOUBLED_EG = -20;
+	static final int ISOLATED_MG = -10;
+	static final int ISOLATED_EG = -15;
+
+	static final long[] FILES = new long[8];
+	static final long[] ADJACENT_FILES = new long[8];
+	// the squares in front of a pawn of either color on its file, and those on the files beside it as well
+	static final long[][] FORWARD = new long[2][64];
+	static final long[][] PASSED = new long[2][64];
+
+	static {
+		for (int f = 0; f < 8; f++) {
+			for (int r = 0; r < 8; r++) {
+				FILES[f] |= Bitboard.bit(Bitboard.square(f, r));
+			}
+		}
+		for (int f = 0; f < 8; f++) {
+			ADJACENT_FILES[f] = (f > 0 ? FILES[f - 1] : 0) | (f < 7 ? FILES[f + 1] : 0);
+		}
+		for (Side s : Side.values()) {
+			int forward = s.equals(Side.WHITE) ? -1 : 1;
+			for (int sq = 0; sq < 64; sq++) {
+				for (int r = (sq >>> 3) + forward; r >= 0 && r < 8; r += forward) {
+					FORWARD[s.ordinal()][sq] |= Bitboard.bit(Bitboard.square(sq & 7, r));
+				}
+				long ahead = FORWARD[s.ordinal()][sq];
+				PASSED[s.ordinal()][sq] = ahead | ((ahead << 1) & ~FILES[0]) | ((ahead >>> 1) & ~FILES[7]);
+			}
+		}
+	}
+
+	final PawnTable pawns;
+
+	TaperedEvaluator(int pawnTableMegabytes) {
+		pawns = new PawnTable(pawnTableMegabytes);
+	}
+
+	TaperedEvaluator() {
+		this(1);
+	}
+
+	public int evaluate(Board b) {
+		int mg = 0;
+		int eg = 0;
+		int phase = 0;
+
+		for (Side s : Side.values()) {
+			int sign = s.equals(Side.WHITE) ? 1 : -1;
+			int flip = s.equals(Side.WHITE) ? 0 : 56;
+			long[] own = b.bitboards[s.ordinal()];
+			long enemyPawnAttacks = pawnAttacks(b, s.opponent());
+			long kingZone = Bitboard.kingAttacks(b.kingSquare(s.opponent())) | b.bitboards[s.opponent().ordinal()][Piece.KING];
+
+			int attackers = 0;
+			int attackUnits = 0;
+			for (int type = Piece.PAWN; type <= Piece.KING; type++) {
+				for (long bb = own[type]; bb != 0; bb &= bb - 1) {
+					int sq = Bitboard.first(bb);
+					mg += sign * (MG_VALUES[type] + PieceSquare.TABLES[type][sq ^ flip]);
+					eg += sign * (EG_VALUES[type] + (type == Piece.KING ? KING_ENDGAME : PieceSquare.TABLES[type])[sq ^ flip]);
+					phase += PHASES[type];
+
+					if (type == Piece.PAWN || type == Piece.KING) {
+						continue;
+					}
+					long attacks = attacks(type, sq, b.occupied);
+					int mobility = Bitboard.count(attacks & ~b.occupancy[s.ordinal()] & ~enemyPawnAttacks) - MOBILITY_BASELINE[type];
+					mg += sign * MOBILITY_MG[type] * mobility;
+					eg += sign * MOBILITY_EG[type] * mobility;
+					if ((attacks & kingZone) != 0) {
+						attackers++;
+						attackUnits += KING_ATTACK_WEIGHTS[type] * Bitboard.count(attacks & kingZone);
+					}
+				}
+			}
+
+			if (Bitboard.count(own[Piece.BISHOP]) >= 2) {
+				mg += sign * BISHOP_PAIR_MG;
+				eg += sign * BISHOP_PAIR_EG;
+			}
+			if (attackers >= 2) {
+				mg += sign * Math.min(KING_DANGER_LIMIT, attackUnits * attackUnits / 4);
+			}
+			mg += sign * shelter(b, s);
+		}
+
+		long structure = pawns.scores(b);
+		mg += PawnTable.mg(structure);
+		eg += PawnTable.eg(structure);
+
+		phase = Math.min(phase, TOTAL_PHASE);
+		return (mg * phase + eg * (TOTAL_PHASE - phase)) / TOTAL_PHASE;
+	}
+
+	public static long attacks(int type, int sq, long occupied) {
+		if (type == Piece.KNIGHT) {
+			return Bitboard.knightAttacks(sq);
+		}
+		if (type == Piece.BISHOP) {
+			return Bitboard.bishopAttacks(sq, occupied);
+		}
+		if (type == Piece.ROOK) {
+			return Bitboard.rookAttacks(sq, occupied);
+		}
+		return Bitboard.bishopAttacks(sq, occupied) | Bitboard.rookAttacks(sq, occupied);
+	}
+
+	public static long pawnAttacks(Board b, Side s) {
+		long pawns = b.bitboards[s.ordinal()][Piece.PAWN];
+		if (s.equals(Side.WHITE)) {
+			return ((pawns >>> 9) & ~FILES[7]) | ((pawns >>> 7) & ~FILES[0]);
+		}
+		return ((pawns << 7) & ~FILES[7]) | ((pawns << 9) & ~FILES[0]);
+	}
+
+	// own pawns on the king's file and the files beside it, one or two squares in front of it
+	public static int shelter(Board b, Side s) {
+		int king = b.kingSquare(s);
+		long pawns = b.bitboards[s.ordinal()][Piece.PAWN];
+		int forward = s.equals(Side.WHITE) ? -1 : 1;
+		int x = king & 7;
+		int y = king >>> 3;
+
+		int ans = 0;
+		for (int f = Math.max(0, x - 1); f <= Math.min(7, x + 1); f++) {
+			if (Board.inBounds(y + forward, f) && Bitboard.has(pawns, Bitboard.square(f, y + forward))) {
+				ans += SHIELD_NEAR;
+			}
+			else if (Board.inBounds(y + 2*forward, f) && Bitboard.has(pawns, Bitboard.square(f, y + 2*forward))) {
+				ans += SHIELD_FAR;
+			}
+		}
+		return ans;
+	}
+
+	// passed, doubled and isolated pawns for both sides, from white's point of view, packed as in PawnTable
+	public static long pawnStructure(Board b) {
+		int mg = 0;
+		int eg = 0;
+		for (Side s : Side.values()) {
+			int sign = s.equals(Side.WHITE) ? 1 : -1;
+			long own = b.bitboards[s.ordinal()][Piece.PAWN];
+			long enemy = b.bitboards[s.opponent().ordinal()][Piece.PAWN];
+
+			for (long bb = own; bb != 0; bb &= bb - 1) {
+				int sq = Bitboard.first(bb);
+				int file = sq & 7;
+				boolean doubled = (own & FORWARD[s.ordinal()][sq]) != 0;
+
+				if (doubled) {
+					mg += sign * DOUBLED_MG;
+					eg += sign * DOUBLED_EG;
+				}
+				if ((own & ADJACENT_FILES[file]) == 0) {
+					mg += sign * ISOLATED_MG;
+					eg += sign * ISOLATED_EG;
+				}
+				if (!doubled && (enemy & PASSED[s.ordinal()][sq]) == 0) {
+					int rank = s.equals(Side.WHITE) ? 7 - (sq >>> 3) : sq >>> 3;
+					mg += sign * PASSED_MG[rank];
+					eg += sign * PASSED_EG[rank];
+				}
+			}
+		}
+		return PawnTable.pack(mg, eg);
+	}
+}
+
+// pawn structure scores by Board.pawnKey; pawns move rarely, so most positions find theirs here.
+// shared between search threads the same way as the TranspositionTable, with the key stored xor'd with the entry
+class PawnTable {
+	static final int ENTRY_BYTES = 8 + 8;
+
+	public static long pack(int mg, int eg) {
+		return (long) mg << 32 | (eg & 0xFFFFFFFFL);
+	}
+
+	public static int mg(long entry) {
+		return (int) (entry >> 32);
+	}
+
+	public static int eg(long entry) {
+		return (int) entry;
+	}
+
+	final int mask;
+	final long[] keys;
+	final long[] entries;
+
+	PawnTable(int megabytes) {
+		int size = TranspositionTable.entriesFor(megabytes); // its entries are the same size as this table's
+		mask = size - 1;
+		keys = new long[size];
+		entries = new long[size];
+	}
+
+	// an empty slot reads as key 0 with no score, which is right: 0 is the key of no pawns at all
+	public long scores(Board b) {
+		int i = (int) b.pawnKey & mask;
+		long entry = entries[i];
+		if ((keys[i] ^ entry) == b.pawnKey) {
+			return entry;
+		}
+
+		entry = TaperedEvaluator.pawnStructure(b);
+		entries[i] = entry;
+		keys[i] = b.pawnKey ^ entry;
+		return entry;
+	}
+}
@@ -0,0 +1,54 @@
+// turns a clock into deadlines for one search: no new iteration is started after the soft one,
+// and the search in progress is abandoned at the hard one
+class TimeManager {
+	static final int MOVES_TO_GO = 30;
+	static final double SAFETY_MARGIN = 0.05; // seconds left over for everything but the search
+	static final double HARD_FACTOR = 4;
+	static final double MAX_SHARE = 0.8; // of the remaining clock one move may use at most
+
+	public static TimeManager unlimited() {
+		return new TimeManager(Long.MAX_VALUE, Long.MAX_VALUE);
+	}
+
+	public static TimeManager fixedTime(double seconds) {
+		long nanos = toNanos(seconds);
+		return new TimeManager(nanos, nanos);
+	}
+
+	public static long toNanos(double seconds) {
+		return (long) (Math.max(0, seconds) * 1e9);
+	}
+
+	final long start;
+	final long softLimit;
+	final long hardLimit;
+
+	TimeManager(long softLimit, long hardLimit) {
+		this.start = System.nanoTime();
+		this.softLimit = softLimit;
+		this.hardLimit = hardLimit;
+	}
+
+	TimeManager(double timeLeft, double increment) {
+		this.start = System.nanoTime();
+
+		double usable = Math.max(0, timeLeft - SAFETY_MARGIN);
+		double hard = Math.min(usable * MAX_SHARE, (usable / MOVES_TO_GO + increment * 0.75) * HARD_FACTOR);
+		double soft = Math.min(hard, usable / MOVES_TO_GO + increment * 0.75);
+
+		this.softLimit = toNanos(soft);
+		this.hardLimit = toNanos(hard);
+	}
+
+	public long elapsed() {
+		return System.nanoTime() - start;
+	}
+
+	public boolean canStartIteration() {
+		return elapsed() < softLimit;
+	}
+
+	public boolean outOfTime() {
+		return elapsed() >= hardLimit;
+	}
+}
@@ -0,0 +1,193 @@
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import tester.*;
+
+// a fixed-size hash of searched positions, one slot per index, shared by every search thread without locks:
+// each entry is packed into one long, and the slot's key is stored xor'd with it, so an entry half overwritten
+// by another thread no longer matches its key and reads as a miss instead of as someone else's result
+class TranspositionTable {
+	static final int ENTRY_BYTES = 8 + 8;
+
+	static final byte EMPTY = 0;
+	static final byte EXACT = 1;
+	static final byte LOWER_BOUND = 2; // the search failed high, the score is at least this
+	static final byte UPPER_BOUND = 3; // the search failed low, the score is at most this
+
+	// entry layout: move in bits 0-23, depth 24-31, flag 32-33, age 34-39, score 40-63
+	static final int AGE_MASK = 63;
+
+	public static int entriesFor(int megabytes) {
+		long bytes = Math.max(1, megabytes) * 1024L * 1024L;
+		long entries = Long.highestOneBit(Math.max(1, bytes / ENTRY_BYTES));
+		return (int) Math.min(entries, 1 << 30);
+	}
+
+	public static long pack(int score, int depth, byte flag, int move, int age) {
+		return (move & 0xFFFFFFL) | (depth & 0xFFL) << 24 | (long) flag << 32 | (long) (age & AGE_MASK) << 34
+				| (long) score << 40;
+	}
+
+	public static int score(long entry) {
+		return (int) (entry >> 40);
+	}
+
+	public static int depth(long entry) {
+		return (byte) (entry >>> 24);
+	}
+
+	public static byte flag(long entry) {
+		return (byte) ((entry >>> 32) & 3);
+	}
+
+	public static int move(long entry) {
+		return (int) (entry & 0xFFFFFF);
+	}
+
+	public static int age(long entry) {
+		return (int) ((entry >>> 34) & AGE_MASK);
+	}
+
+	final int mask;
+	final long[] keys; // the position's key xor'd with its entry
+	final long[] entries;
+
+	volatile int age;
+
+	final LongAdder probes = new LongAdder();
+	final LongAdder hits = new LongAdder();
+	final LongAdder misses = new LongAdder();
+	final LongAdder collisions = new LongAdder();
+	final LongAdder stores = new LongAdder();
+	final LongAdder overwrites = new LongAdder();
+
+	TranspositionTable(int megabytes) {
+		int size = entriesFor(megabytes);
+		mask = size - 1;
+		keys = new long[size];
+		entries = new long[size];
+	}
+
+	public int size() {
+		return keys.length;
+	}
+
+	public int index(long key) {
+		return (int) key & mask;
+	}
+
+	// the entry stored for key, or 0 (which is never a stored entry, as its flag would be EMPTY) if there is none
+	public long probe(long key) {
+		probes.increment();
+		int i = index(key);
+		long entry = entries[i];
+		if (entry != 0 && (keys[i] ^ entry) == key) {
+			hits.increment();
+			return entry;
+		}
+
+		misses.increment();
+		if (entry != 0) {
+			collisions.increment();
+		}
+		return 0;
+	}
+
+	// keeps the deeper result unless the slot was filled by an earlier search or holds the same position
+	public void store(long key, int score, int depth, byte flag, int move) {
+		int i = index(key);
+		long old = entries[i];
+		boolean same = old != 0 && (keys[i] ^ old) == key;
+		int age = this.age;
+		if (old != 0 && !same && age(old) == (age & AGE_MASK) && depth(old) > depth) {
+			return;
+		}
+
+		stores.increment();
+		if (old != 0 && !same) {
+			overwrites.increment();
+		}
+
+		if (same && move == 0) {
+			move = move(old);
+		}
+
+		long entry = pack(score, depth, flag, move, age);
+		entries[i] = entry;
+		keys[i] = key ^ entry;
+	}
+
+	// called at the start of every search so entries left from older ones are replaced first
+	public void newSearch() {
+		age++;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(entries, 0);
+		for (LongAdder counter : new LongAdder[] {probes, hits, misses, collisions, stores, overwrites}) {
+			counter.reset();
+		}
+	}
+
+	public String stats() {
+		return "tt: " + probes.sum() + " probes, " + hits.sum() + " hits, " + misses.sum() + " misses, "
+				+ collisions.sum() + " collisions, " + stores.sum() + " stores, " + overwrites.sum() + " overwrites";
+	}
+}
+
+class ExamplesTranspositionTable {
+	void testPack(Tester t) {
+		long entry = TranspositionTable.pack(-SmartAI.MATE + 7, 12, TranspositionTable.LOWER_BOUND, 0xABCDEF, 70);
+		t.checkExpect(TranspositionTable.score(entry), -SmartAI.MATE + 7);
+		t.checkExpect(TranspositionTable.depth(entry), 12);
+		t.checkExpect(TranspositionTable.flag(entry), TranspositionTable.LOWER_BOUND);
+		t.checkExpect(TranspositionTable.move(entry), 0xABCDEF);
+		t.checkExpect(TranspositionTable.age(entry), 70 & TranspositionTable.AGE_MASK);
+		// depths and scores are signed
+		t.checkExpect(TranspositionTable.depth(TranspositionTable.pack(SmartAI.MATE, -1, TranspositionTable.EXACT, 0, 0)), -1);
+		t.checkExpect(TranspositionTable.score(TranspositionTable.pack(SmartAI.MATE, -1, TranspositionTable.EXACT, 0, 0)), SmartAI.MATE);
+	}
+
+	void testStoreProbe(Tester t) {
+		TranspositionTable table = new TranspositionTable(1);
+		long key = new Board(Variant.STANDARD).key;
+		int move = Moves.fromUci(new Board(Variant.STANDARD), "e2e4");
+		t.checkExpect(table.probe(key), 0L);
+
+		table.store(key, 35, 6, TranspositionTable.EXACT, move);
+		long entry = table.probe(key);
+		t.checkExpect(TranspositionTable.score(entry), 35);
+		t.checkExpect(TranspositionTable.depth(entry), 6);
+		t.checkExpect(TranspositionTable.flag(entry), TranspositionTable.EXACT);
+		t.checkExpect(TranspositionTable.move(entry), move);
+
+		// another key in the same slot misses instead of reading this entry
+		t.checkExpect(table.probe(key ^ (long) table.size() << 1), 0L);
+		table.clear();
+		t.checkExpect(table.probe(key), 0L);
+	}
+
+	void testReplacement(Tester t) {
+		TranspositionTable table = new TranspositionTable(1);
+		long key = 0x1234_5678_9ABC_DEF0L;
+		long other = key ^ (long) table.size() << 1;
+		table.store(key, 10, 8, TranspositionTable.EXACT, 77);
+
+		// a shallower result for another position in the same search leaves the slot alone
+		table.store(other, 20, 3, TranspositionTable.EXACT, 0);
+		t.checkExpect(table.probe(other), 0L);
+		t.checkExpect(TranspositionTable.depth(table.probe(key)), 8);
+
+		// the same position is always replaced, keeping its move if the new result has none
+		table.store(key, -5, 2, TranspositionTable.UPPER_BOUND, Moves.NONE);
+		t.checkExpect(TranspositionTable.score(table.probe(key)), -5);
+		t.checkExpect(TranspositionTable.move(table.probe(key)), 77);
+
+		// and entries from an earlier search make way
+		table.store(key, 10, 8, TranspositionTable.EXACT, 77);
+		table.newSearch();
+		table.store(other, 20, 3, TranspositionTable.EXACT, 0);
+		t.checkExpect(TranspositionTable.score(table.probe(other)), 20);
+		t.checkExpect(table.probe(key), 0L);
+	}
+}
@@ -0,0 +1,301 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import tester.*;
+
+// the engine behind the UCI protocol, so a GUI or tournament manager can run it over stdin and stdout.
+// searches run on a thread of their own, and this one goes on reading commands, so "stop" ends them at once.
+// run it from the Pictures folder: java Uci
+class Uci {
+	static final int MAX_HASH = 1024;
+	static final int MAX_THREADS = 64;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Piece.headless = true;
+		new Uci(new BufferedReader(new InputStreamReader(System.in)), System.out).loop();
+	}
+
+	final BufferedReader in;
+	final PrintStream out;
+
+	int hash = SmartAI.HASH_MEGABYTES;
+	SmartAI ai;
+	Board board = new Board(Variant.STANDARD);
+
+	Thread search;
+	// an infinite search waits for this before it answers, even if it runs out of plies first
+	CountDownLatch stopSignal = new CountDownLatch(0);
+
+	Uci(BufferedReader in, PrintStream out) {
+		this.in = in;
+		this.out = out;
+		ai = newAI(1);
+	}
+
+	public SmartAI newAI(int threads) {
+		SmartAI ans = new SmartAI(Side.WHITE, hash, threads);
+		ans.listener = this::info;
+		return ans;
+	}
+
+	public synchronized void send(String line) {
+		out.println(line);
+		out.flush();
+	}
+
+	public void loop() throws IOException, InterruptedException {
+		for (String line = in.readLine(); line != null; line = in.readLine()) {
+			String[] words = line.trim().split("\\s+");
+			switch (words[0]) {
+			case "uci":
+				send("id name Chess");
+				send("id author the Chess authors");
+				send("option name Hash type spin default " + SmartAI.HASH_MEGABYTES + " min 1 max " + MAX_HASH);
+				send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+				send("option name TablebasePath type string default <empty>");
+				send("uciok");
+				break;
+			case "isready":
+				send("readyok");
+				break;
+			case "ucinewgame":
+				stop();
+				ai.table.clear();
+				board = new Board(Variant.STANDARD);
+				break;
+			case "setoption":
+				stop();
+				setOption(words);
+				break;
+			case "position":
+				stop();
+				position(words);
+				break;
+			case "go":
+				stop();
+				go(words);
+				break;
+			case "stop":
+				stop();
+				break;
+			case "quit":
+				stop();
+				ai.close();
+				return;
+			default:
+				// unknown commands are ignored, as the protocol asks
+				break;
+			}
+		}
+		stop();
+		ai.close();
+	}
+
+	// setoption name <name> value <value>; Hash and Threads are numbers, TablebasePath a folder of .tb files
+	public void setOption(String[] words) {
+		String line = String.join(" ", words);
+		int name = line.indexOf(" name ");
+		int value = line.indexOf(" value ");
+		if (name < 0 || value < name) {
+			return;
+		}
+		String option = line.substring(name + 6, value).trim();
+		if (option.equalsIgnoreCase("TablebasePath")) {
+			String folder = line.substring(value + 7).trim();
+			try {
+				Tablebases tablebases = Tablebases.load(folder);
+				ai.setTablebases(tablebases.size() > 0 ? tablebases : null);
+				send("info string " + tablebases.size() + " tables found in " + folder);
+			}
+			catch (IOException e) {
+				send("info string could not read tables from " + folder + ": " + e.getMessage());
+			}
+			return;
+		}
+		int n;
+		try {
+			n = Integer.parseInt(line.substring(value + 7).trim());
+		}
+		catch (NumberFormatException e) {
+			send("info string bad value for " + option);
+			return;
+		}
+
+		if (option.equalsIgnoreCase("Hash")) {
+			hash = Math.max(1, Math.min(n, MAX_HASH));
+			int threads = ai.threads();
+			Tablebases tablebases = ai.tablebases;
+			ai.close();
+			ai = newAI(threads);
+			ai.setTablebases(tablebases);
+		}
+		else if (option.equalsIgnoreCase("Threads")) {
+			ai.setThreads(Math.max(1, Math.min(n, MAX_THREADS)));
+		}
+		else {
+			send("info string no option " + option);
+		}
+	}
+
+	// position (startpos | fen <fen>) [moves <move>...]
+	public void position(String[] words) {
+		int i = 1;
+		Board b;
+		if (words.length > 1 && words[1].equals("fen")) {
+			StringBuilder fen = new StringBuilder();
+			for (i = 2; i < words.length && !words[i].equals("moves"); i++) {
+				fen.append(words[i]).append(" ");
+			}
+			b = Board.fromFen(fen.toString());
+		}
+		else {
+			b = new Board(Variant.STANDARD);
+			i = 2;
+		}
+
+		UndoInfo u = new UndoInfo();
+		for (i++; i < words.length; i++) {
+			int move = Moves.fromUci(b, words[i]);
+			if (move == Moves.NONE) {
+				send("info string illegal move " + words[i]);
+				break;
+			}
+			b.make(move, u);
+		}
+		board = b;
+	}
+
+	// go [depth n] [movetime ms] [wtime ms] [btime ms] [winc ms] [binc ms] [infinite]; a depth and a clock both
+	// apply, and whichever runs out first ends the search
+	public void go(String[] words) {
+		int depth = SmartAI.MAX_PLY - 1;
+		double moveTime = -1;
+		double[] time = {-1, -1}; // by side
+		double[] increment = {0, 0};
+		boolean infinite = false;
+		for (int i = 1; i < words.length; i++) {
+			String word = words[i];
+			if (word.equals("infinite")) {
+				infinite = true;
+				continue;
+			}
+			if (i + 1 >= words.length) {
+				break;
+			}
+			switch (word) {
+			case "depth":
+				depth = Integer.parseInt(words[++i]);
+				break;
+			case "movetime":
+				moveTime = Long.parseLong(words[++i]) / 1000.0;
+				break;
+			case "wtime":
+				time[Side.WHITE.ordinal()] = Long.parseLong(words[++i]) / 1000.0;
+				break;
+			case "btime":
+				time[Side.BLACK.ordinal()] = Long.parseLong(words[++i]) / 1000.0;
+				break;
+			case "winc":
+				increment[Side.WHITE.ordinal()] = Long.parseLong(words[++i]) / 1000.0;
+				break;
+			case "binc":
+				increment[Side.BLACK.ordinal()] = Long.parseLong(words[++i]) / 1000.0;
+				break;
+			default:
+				break;
+			}
+		}
+
+		int side = board.turn.ordinal();
+		ai.setDepth(depth);
+		ai.setMoveTime(infinite ? -1 : moveTime);
+		ai.setClock(infinite ? -1 : time[side], increment[side]);
+
+		Board root = new Board(board);
+		SmartAI searcher = ai;
+		CountDownLatch signal = new CountDownLatch(infinite ? 1 : 0);
+		stopSignal = signal;
+		// cleared here rather than by the search, so a stop that comes before the thread gets going still counts
+		searcher.stopped = false;
+		search = new Thread(() -> {
+			int move = searcher.search(root);
+			try {
+				signal.await();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			send("bestmove " + (move == Moves.NONE ? "0000" : Moves.uci(move)));
+		}, "search");
+		search.start();
+	}
+
+	// ends the search in progress, if there is one, once it has answered
+	public void stop() throws InterruptedException {
+		if (search != null) {
+			ai.stop();
+			stopSignal.countDown();
+			search.join();
+			search = null;
+		}
+	}
+
+	public void info(int depth, int score, long nodes, long elapsed, int[] line) {
+		String pv = "";
+		for (int move : line) {
+			pv += " " + Moves.uci(move);
+		}
+		send("info depth " + depth + " score " + score(score) + " nodes " + nodes
+				+ " nps " + Perft.nodesPerSecond(nodes, Math.max(1, elapsed)) + " time " + elapsed / 1000000 + " pv" + pv);
+	}
+
+	// centipawns, or moves to mate, negative when being mated
+	public static String score(int score) {
+		if (SmartAI.isMate(score)) {
+			return "mate " + (score > 0 ? (SmartAI.MATE - score + 1) / 2 : -(SmartAI.MATE + score) / 2);
+		}
+		return "cp " + score;
+	}
+}
+
+class ExamplesUci {
+	// runs the commands and waits for the search to answer, returning everything sent back
+	String run(String... commands) throws IOException, InterruptedException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Uci uci = new Uci(new BufferedReader(new StringReader("")), new PrintStream(bytes));
+		for (String command : commands) {
+			String[] words = command.split(" ");
+			if (words[0].equals("position")) {
+				uci.position(words);
+			}
+			else {
+				uci.go(words);
+				uci.search.join();
+			}
+		}
+		return bytes.toString();
+	}
+
+	int deepest(String output) {
+		int ans = 0;
+		for (String line : output.split("\\r?\\n")) {
+			if (line.startsWith("info depth ")) {
+				ans = Math.max(ans, Integer.parseInt(line.split(" ")[2]));
+			}
+		}
+		return ans;
+	}
+
+	void testDepthWithClock(Tester t) throws IOException, InterruptedException {
+		// a minute on the clock would take the search much further than one ply
+		String output = run("position startpos", "go depth 1 wtime 60000 btime 60000");
+		t.checkExpect(deepest(output), 1);
+		t.checkExpect(output.contains("bestmove "), true);
+	}
+
+	void testClockWithoutDepth(Tester t) throws IOException, InterruptedException {
+		String output = run("position startpos", "go movetime 200");
+		t.checkExpect(deepest(output) > 1, true);
+		t.checkExpect(output.contains("bestmove "), true);
+	}
+}
@@ -0,0 +1,126 @@
+import java.util.*;
+import tester.*;
+
+// random keys xor-ed together into Board.key, fixed by the seed so keys are stable between runs
+class Zobrist {
+	static final long[][][] PIECES = new long[2][6][64];
+	static final long[] CASTLING = new long[16];
+	static final long[] ENPASSANT_FILE = new long[8];
+	static final long WHITE_TO_MOVE;
+
+	static {
+		Random r = new Random(0x5EED_C0FFEEL);
+		for (long[][] side : PIECES) {
+			for (long[] type : side) {
+				for (int sq = 0; sq < 64; sq++) {
+					type[sq] = r.nextLong();
+				}
+			}
+		}
+		for (int i = 0; i < 16; i++) {
+			CASTLING[i] = r.nextLong();
+		}
+		for (int i = 0; i < 8; i++) {
+			ENPASSANT_FILE[i] = r.nextLong();
+		}
+		WHITE_TO_MOVE = r.nextLong();
+	}
+
+	public static long piece(Piece p, int sq) {
+		return PIECES[p.color.ordinal()][p.type()][sq];
+	}
+
+	// the part of the key that is not piece placement
+	public static long state(Board b) {
+		long ans = CASTLING[b.castling];
+		if (b.turn.equals(Side.WHITE)) {
+			ans ^= WHITE_TO_MOVE;
+		}
+		if (b.enpassantCapturable()) {
+			ans ^= ENPASSANT_FILE[b.enpassant & 7];
+		}
+		return ans;
+	}
+
+	public static long compute(Board b) {
+		long ans = state(b);
+		long all = b.occupied;
+		while (all != 0) {
+			int sq = Bitboard.first(all);
+			ans ^= piece(b.squares[sq], sq);
+			all &= all - 1;
+		}
+		return ans;
+	}
+
+	public static long computePawns(Board b) {
+		long ans = 0;
+		for (Side s : Side.values()) {
+			for (long bb = b.bitboards[s.ordinal()][Piece.PAWN]; bb != 0; bb &= bb - 1) {
+				ans ^= PIECES[s.ordinal()][Piece.PAWN][Bitboard.first(bb)];
+			}
+		}
+		return ans;
+	}
+}
+
+class ExamplesZobrist {
+	long key(String fen) {
+		return Board.fromFen(fen).key;
+	}
+
+	long after(String moves) {
+		Board b = new Board(Variant.STANDARD);
+		UndoInfo u = new UndoInfo();
+		for (String move : moves.split(" ")) {
+			b.make(Moves.fromUci(b, move), u);
+		}
+		return b.key;
+	}
+
+	// the moves under b, to the given depth, whose incrementally updated key differs from one computed afresh
+	int wrongKeys(Board b, int depth) {
+		if (depth == 0) {
+			return 0;
+		}
+		int ans = 0;
+		MoveList list = new MoveList();
+		MoveGenerator.generate(b, b.turn, list);
+		UndoInfo u = new UndoInfo();
+		for (int i = 0; i < list.size(); i++) {
+			int move = list.get(i);
+			if (!MoveGenerator.legal(b, list, move)) {
+				continue;
+			}
+			b.make(move, u);
+			if (b.key != Zobrist.compute(b) || b.pawnKey != Zobrist.computePawns(b)) {
+				ans++;
+			}
+			ans += wrongKeys(b, depth - 1);
+			b.unmake(u);
+		}
+		return ans;
+	}
+
+	void testIncremental(Tester t) {
+		for (String[] position : Perft.REFERENCE) {
+			t.checkExpect(wrongKeys(Board.fromFen(position[1]), 2), 0, position[0]);
+		}
+	}
+
+	void testTranspositions(Tester t) {
+		t.checkExpect(after("g1f3 g8f6 f3g1 f6g8"), new Board(Variant.STANDARD).key);
+		t.checkExpect(after("e2e4 e7e5 g1f3"), after("g1f3 e7e5 e2e4"));
+		t.checkExpect(after("e2e4 e7e5"), key("rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 1"));
+		t.checkExpect(Board.fromFen("4k3/8/8/8/8/8/8/4K3 w - - 0 1").equals(Board.fromFen("4k3/8/8/8/8/8/8/4K3 w - - 7 1")), true);
+		t.checkExpect(Board.fromFen("4k3/8/8/8/8/8/8/4K3 w - - 0 1").hashCode(), Board.fromFen("4k3/8/8/8/8/8/8/4K3 w - - 7 1").hashCode());
+	}
+
+	void testStateInKey(Tester t) {
+		t.checkExpect(key("4k3/8/8/8/8/8/8/4K3 w - - 0 1") != key("4k3/8/8/8/8/8/8/4K3 b - - 0 1"), true);
+		t.checkExpect(key("r3k3/8/8/8/8/8/8/4K3 b q - 0 1") != key("r3k3/8/8/8/8/8/8/4K3 b - - 0 1"), true);
+		// an en passant square only counts when a pawn can take on it
+		t.checkExpect(key("4k3/8/8/8/4Pp2/8/8/4K3 b - e3 0 1") != key("4k3/8/8/8/4Pp2/8/8/4K3 b - - 0 1"), true);
+		t.checkExpect(key("4k3/8/8/8/4P3/8/8/4K3 b - e3 0 1"), key("4k3/8/8/8/4P3/8/8/4K3 b - - 0 1"));
+	}
+}